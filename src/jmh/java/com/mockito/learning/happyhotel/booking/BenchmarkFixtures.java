@@ -0,0 +1,34 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+
+class BenchmarkFixtures {
+
+    static final int[] CAPACITIES = {1, 2, 2, 3, 4, 5};
+
+    private BenchmarkFixtures() {
+    }
+
+    // rooms of 1 to 5 places, skewed towards doubles like a real hotel
+    static List<Room> inventory(int rooms) {
+        List<Room> inventory = new ArrayList<>(rooms);
+        for (int i = 0; i < rooms; i++) {
+            inventory.add(new Room("R" + i, CAPACITIES[i % CAPACITIES.length]));
+        }
+        return inventory;
+    }
+
+    static RoomService roomService(int rooms, AvailabilityCalendarType calendarType) {
+        return new RoomService(inventory(rooms), calendarType, Clock.systemDefaultZone());
+    }
+
+    static MailSender mailSender() {
+        ConfirmationOutbox outbox = new ConfirmationOutbox(bookingIds -> {
+        }, new JournalSettings(false, null, FsyncPolicy.PERIODIC, 100, 0), 100_000, 100, 1, 1000, 1, 1, 1);
+        outbox.start();
+        return new MailSender(outbox);
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+// Runs the selected benchmarks once per thread count and keeps one JSON result file per run,
+// named by timestamp and thread count, so runs can be compared over time.
+// Arguments: include pattern, comma separated thread counts, output directory.
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+        String[] threadCounts = (args.length > 1 ? args[1] : "1").split(",");
+        Path outputDirectory = Path.of(args.length > 2 ? args[2] : "target/jmh");
+        Files.createDirectories(outputDirectory);
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+
+        for (String threadCount : threadCounts) {
+            int threads = Integer.parseInt(threadCount.trim());
+            Path result = outputDirectory.resolve("jmh-" + timestamp + "-t" + threads + ".json");
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .exclude(BenchmarkRunner.class.getSimpleName())
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(result.toString())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookingDAOBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int bookings;
+
+    private BookingDAO bookingDAO;
+    private BookingRequest bookingRequest;
+    private String[] bookingIds;
+    private LocalDate today;
+
+    // five bookings per user, a thousand rooms and a year of arrivals, so every query picks out a small slice
+    @Setup
+    public void setup() {
+        bookingDAO = new BookingDAO();
+        today = LocalDate.now();
+        bookingRequest = new BookingRequest("1", today, today.plusDays(3), 2, false)
+                .withRoomId("R1");
+        bookingIds = new String[bookings];
+        for (int i = 0; i < bookings; i++) {
+            LocalDate arrival = today.plusDays(i % 365);
+            bookingIds[i] = bookingDAO.save(new BookingRequest("user-" + i / 5, arrival, arrival.plusDays(1 + i % 7),
+                    2, false).withRoomId("R" + i % 1000));
+        }
+    }
+
+    @Benchmark
+    public BookingRequest get() {
+        return bookingDAO.get(bookingIds[ThreadLocalRandom.current().nextInt(bookings)]);
+    }
+
+    @Benchmark
+    public String saveAndDelete() {
+        String bookingId = bookingDAO.save(bookingRequest);
+        bookingDAO.delete(bookingId);
+        return bookingId;
+    }
+
+    @Benchmark
+    public Map<String, BookingRequest> findByUser() {
+        return bookingDAO.findByUser("user-" + ThreadLocalRandom.current().nextInt(bookings / 5));
+    }
+
+    @Benchmark
+    public Map<String, BookingRequest> findByRoom() {
+        LocalDate from = today.plusDays(ThreadLocalRandom.current().nextInt(365));
+        return bookingDAO.findByRoom("R" + ThreadLocalRandom.current().nextInt(1000), from, from.plusDays(7));
+    }
+
+    @Benchmark
+    public Map<String, BookingRequest> findByDates() {
+        LocalDate from = today.plusDays(ThreadLocalRandom.current().nextInt(365));
+        return bookingDAO.findByDates(from, from.plusDays(1));
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookingServiceBenchmark {
+
+    private static final List<String> CURRENCIES = List.of("GBP", "JPY");
+
+    @Param({"100", "10000", "50000"})
+    private int rooms;
+
+    private BookingService bookingService;
+    private BookingRequest quote;
+    private LocalDate firstNight;
+
+    @Setup
+    public void setup() {
+        bookingService = new BookingService(new PaymentService(),
+                BenchmarkFixtures.roomService(rooms, AvailabilityCalendarType.INTERVAL), new BookingDAO(),
+                BenchmarkFixtures.mailSender(), new PricingEngine(), new CurrencyConverter(),
+                new QuoteCache(), new BookingSaga());
+        firstNight = LocalDate.now();
+        quote = new BookingRequest("1", firstNight, firstNight.plusDays(4), 2, false);
+    }
+
+    @Benchmark
+    public double calculatePrice() {
+        return bookingService.calculatePrice(quote);
+    }
+
+    @Benchmark
+    public PriceQuote quote() {
+        return bookingService.quote(quote, CURRENCIES);
+    }
+
+    @Benchmark
+    public int getAvailablePlaceCount() {
+        return bookingService.getAvailablePlaceCount();
+    }
+
+    @Benchmark
+    public String makeAndCancelBooking() {
+        // spread threads over a year of arrival dates so they don't all fight over the same rooms
+        LocalDate arrival = firstNight.plusDays(ThreadLocalRandom.current().nextInt(365));
+        BookingRequest bookingRequest = new BookingRequest("1", arrival, arrival.plusDays(3), 2, false);
+        String bookingId = bookingService.makeBooking(bookingRequest);
+        bookingService.cancelBooking(bookingId);
+        return bookingId;
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.mockito.learning.happyhotel.booking;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Compares the booking round trip with meters recording into a registry against the same code with no registry
+// attached, where the global meters are no-ops.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    @Param({"false", "true"})
+    private boolean metricsEnabled;
+
+    private SimpleMeterRegistry registry;
+    private BookingService bookingService;
+    private LocalDate firstNight;
+
+    @Setup
+    public void setup() {
+        if (metricsEnabled) {
+            registry = new SimpleMeterRegistry();
+            Metrics.addRegistry(registry);
+        }
+        bookingService = new BookingService(new PaymentService(),
+                BenchmarkFixtures.roomService(10_000, AvailabilityCalendarType.INTERVAL), new BookingDAO(),
+                BenchmarkFixtures.mailSender(), new PricingEngine(), new CurrencyConverter(),
+                new QuoteCache(), new BookingSaga());
+        firstNight = LocalDate.now();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (registry != null) {
+            Metrics.removeRegistry(registry);
+        }
+    }
+
+    @Benchmark
+    public String makeAndCancelBooking() {
+        LocalDate arrival = firstNight.plusDays(ThreadLocalRandom.current().nextInt(365));
+        BookingRequest bookingRequest = new BookingRequest("1", arrival, arrival.plusDays(2), 2, true);
+        String bookingId = bookingService.makeBooking(bookingRequest);
+        bookingService.cancelBooking(bookingId);
+        return bookingId;
+    }
+
+    @Benchmark
+    public void recordStage() {
+        BookingMetrics.record(BookingMetrics.PRICING, System.nanoTime());
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoomServiceBenchmark {
+
+    @Param({"100", "10000", "50000"})
+    private int rooms;
+
+    @Param({"INTERVAL", "BITMAP"})
+    private AvailabilityCalendarType calendarType;
+
+    private RoomService roomService;
+    private BookingRequest bookingRequest;
+
+    @Setup
+    public void setup() {
+        roomService = BenchmarkFixtures.roomService(rooms, calendarType);
+        LocalDate today = LocalDate.now();
+        // fill nine rooms in ten for the searched week, so lookups have to skip booked rooms
+        List<BookingRequest> fill = new ArrayList<>();
+        for (int i = 0; i < rooms * 9 / 10; i++) {
+            fill.add(new BookingRequest("fill", today, today.plusDays(7),
+                    BenchmarkFixtures.CAPACITIES[i % BenchmarkFixtures.CAPACITIES.length], false));
+        }
+        roomService.claimAvailableRoomIds(fill);
+        bookingRequest = new BookingRequest("1", today.plusDays(2), today.plusDays(5), 2, false);
+    }
+
+    @Benchmark
+    public String findAvailableRoomId() {
+        return roomService.findAvailableRoomId(bookingRequest);
+    }
+
+    @Benchmark
+    public List<Room> getAvailableRooms() {
+        return roomService.getAvailableRooms();
+    }
+
+    @Benchmark
+    public int getAvailablePlaceCount() {
+        return roomService.getAvailablePlaceCount();
+    }
+
+    // a hold that is let go straight away, so the wheel only ever has the cancelled entries to drop
+    @Benchmark
+    public boolean holdAndReleaseRoom() {
+        return roomService.releaseHold(roomService.holdRoom(bookingRequest, Duration.ofMinutes(5)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        roomService.close();
+    }
+
+}
@@ -24,8 +24,7 @@ public class BookingService {
     }
 
     public double calculatePriceEuro(BookingRequest bookingRequest) {
-        long nights = ChronoUnit.DAYS.between(bookingRequest.getDateFrom(), bookingRequest.getDateTo());
-        return CurrencyConverter.toEuro(BASE_PRICE_USD * bookingRequest.getGuestCount() * nights);
+        return CurrencyConverter.toEuro(calculatePrice(bookingRequest));
     }
 
     public String makeBooking(BookingRequest bookingRequest) {
@@ -0,0 +1,84 @@
+package com.mockito.learning.happyhotel.booking;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Non-blocking front of BookingService for the web tier. Work that can block (payment, persistence) runs on a
+// small bounded pool, so request threads are released right away; once the queue is full, submissions are
+// rejected instead of piling up, which the controller turns into 503 responses.
+// A "bookingExecutor" bean replaces the pool, as the java21 build's virtual threads do.
+@Service
+public class AsyncBookingService {
+
+    private final BookingService bookingService;
+    private final RoomService roomService;
+    private final ExecutorService executor;
+
+    public AsyncBookingService(BookingService bookingService, RoomService roomService,
+                               @Value("${happyhotel.bookings.async.threads:8}") int threads,
+                               @Value("${happyhotel.bookings.async.queue-capacity:1000}") int queueCapacity,
+                               @Qualifier("bookingExecutor") ObjectProvider<ExecutorService> bookingExecutor) {
+        this.bookingService = bookingService;
+        this.roomService = roomService;
+        this.executor = bookingExecutor.getIfAvailable(() -> boundedPool(threads, queueCapacity));
+    }
+
+    private static ExecutorService boundedPool(int threads, int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "booking-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public CompletableFuture<String> makeBooking(BookingRequest bookingRequest) {
+        return CompletableFuture.supplyAsync(() -> bookingService.makeBooking(bookingRequest), executor);
+    }
+
+    public CompletableFuture<List<BookingResult>> makeBookings(List<BookingRequest> bookingRequests) {
+        return CompletableFuture.supplyAsync(() -> bookingService.makeBookings(bookingRequests), executor);
+    }
+
+    public CompletableFuture<Void> cancelBooking(String bookingId) {
+        return CompletableFuture.runAsync(() -> bookingService.cancelBooking(bookingId), executor);
+    }
+
+    public CompletableFuture<BookingUpdate> modifyBooking(String bookingId, long expectedVersion,
+                                                          BookingRequest changes) {
+        return CompletableFuture.supplyAsync(() -> bookingService.modifyBooking(bookingId, expectedVersion,
+                changes.getDateFrom(), changes.getDateTo(), changes.getGuestCount()), executor);
+    }
+
+    public CompletableFuture<VersionedBooking> getBooking(String bookingId) {
+        return CompletableFuture.completedFuture(bookingService.getBooking(bookingId));
+    }
+
+    // pricing and availability never block, so they are answered on the calling thread
+    public CompletableFuture<PriceQuote> quote(BookingRequest bookingRequest, List<String> currencies) {
+        return CompletableFuture.completedFuture(bookingService.quote(bookingRequest, currencies));
+    }
+
+    public CompletableFuture<List<Room>> getAvailableRooms(LocalDate dateFrom, LocalDate dateTo) {
+        return CompletableFuture.completedFuture(roomService.getAvailableRooms(dateFrom, dateTo));
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdown();
+    }
+
+}
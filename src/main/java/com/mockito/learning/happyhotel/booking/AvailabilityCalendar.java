@@ -0,0 +1,27 @@
+package com.mockito.learning.happyhotel.booking;
+
+interface AvailabilityCalendar {
+
+    // epoch days 0..65535, i.e. up to the year 2149
+    int MAX_EPOCH_DAY = 1 << 16;
+
+    boolean isFree(int room, long from, long to);
+
+    // first room in [fromRoom, toRoom) that is free for every night in [from, to), or -1
+    int nextFreeRoom(int fromRoom, int toRoom, long from, long to);
+
+    boolean book(int room, long from, long to);
+
+    boolean release(int room, long from, long to);
+
+    // releases the one booked stay that covers [from, to), however many nights it has beyond them; null if none does
+    Stay releaseCovering(int room, long from, long to);
+
+    // moves the booked stay [from, to) of a room to [newFrom, newTo): nights the two share stay booked throughout
+    // and the stay is left as it was if any new night is taken, so nobody can claim the room in between
+    boolean move(int room, long from, long to, long newFrom, long newTo);
+
+    record Stay(long from, long to) {
+    }
+
+}
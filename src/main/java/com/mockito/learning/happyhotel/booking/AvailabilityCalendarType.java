@@ -0,0 +1,8 @@
+package com.mockito.learning.happyhotel.booking;
+
+public enum AvailabilityCalendarType {
+
+    INTERVAL,
+    BITMAP
+
+}
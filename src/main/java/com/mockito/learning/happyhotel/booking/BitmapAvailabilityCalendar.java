@@ -0,0 +1,248 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+class BitmapAvailabilityCalendar implements AvailabilityCalendar {
+
+    private final int wordCount;
+    // one bitmap per night, created on first booking, with three bits per room: booked, plus an arrival and a
+    // departure marker on the first and last night of each stay, so release can tell one stay from a part of it
+    private final AtomicReferenceArray<AtomicLongArray> nights = new AtomicReferenceArray<>(MAX_EPOCH_DAY);
+
+    BitmapAvailabilityCalendar(int roomCount) {
+        this.wordCount = (roomCount + 63) >>> 6;
+    }
+
+    @Override
+    public boolean isFree(int room, long from, long to) {
+        return nextFreeRoom(room, room + 1, from, to) == room;
+    }
+
+    @Override
+    public int nextFreeRoom(int fromRoom, int toRoom, long from, long to) {
+        checkRange(from, to);
+        if (fromRoom >= toRoom) {
+            return -1;
+        }
+        int lastWord = (toRoom - 1) >>> 6;
+        for (int word = fromRoom >>> 6; word <= lastWord; word++) {
+            long free = rangeMask(word, fromRoom, toRoom);
+            for (long night = from; night < to && free != 0; night++) {
+                AtomicLongArray booked = nights.get((int) night);
+                if (booked != null) {
+                    free &= ~booked.get(word);
+                }
+            }
+            if (free != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(free);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean book(int room, long from, long to) {
+        checkRange(from, to);
+        if (from >= to) {
+            return false;
+        }
+        int word = room >>> 6;
+        long bit = 1L << room;
+        for (long night = from; night < to; night++) {
+            if (!setBit(bitmapFor(night), word, bit)) {
+                clearBooked(word, bit, from, night);
+                return false;
+            }
+        }
+        markStay(word, bit, from, to);
+        return true;
+    }
+
+    @Override
+    public boolean release(int room, long from, long to) {
+        checkRange(from, to);
+        int word = room >>> 6;
+        long bit = 1L << room;
+        return from < to && claimStay(word, bit, from, to) && clearStay(word, bit, from, to);
+    }
+
+    // walks out from [from, to) to the stay's arrival and departure markers; a stay that is being moved has its
+    // markers cleared for a moment, so a walk that ends anywhere but on one whole stay looks again
+    @Override
+    public Stay releaseCovering(int room, long from, long to) {
+        checkRange(from, to);
+        int word = room >>> 6;
+        long bit = 1L << room;
+        if (from >= to) {
+            return null;
+        }
+        while (true) {
+            // a free night, or a stay ending or starting inside the range, means no one stay covers it
+            for (long night = from; night < to; night++) {
+                if (!isSet(night, word, bit) || (night > from && isSet(night, arrival(word), bit))
+                        || (night < to - 1 && isSet(night, departure(word), bit))) {
+                    return null;
+                }
+            }
+            long start = from;
+            while (!isSet(start, arrival(word), bit) && start > 0 && isSet(start - 1, word, bit)
+                    && !isSet(start - 1, departure(word), bit)) {
+                start--;
+            }
+            long end = to;
+            while (!isSet(end - 1, departure(word), bit) && end < MAX_EPOCH_DAY && isSet(end, word, bit)
+                    && !isSet(end, arrival(word), bit)) {
+                end++;
+            }
+            if (claimStay(word, bit, start, end)) {
+                return clearStay(word, bit, start, end) ? new Stay(start, end) : null;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public boolean move(int room, long from, long to, long newFrom, long newTo) {
+        checkRange(from, to);
+        checkRange(newFrom, newTo);
+        int word = room >>> 6;
+        long bit = 1L << room;
+        if (from >= to || newFrom >= newTo || !claimStay(word, bit, from, to)) {
+            return false;
+        }
+        // the shared nights keep their booked bit, only the nights the stay gains or loses change
+        for (long night = newFrom; night < newTo; night++) {
+            if ((night < from || night >= to) && !setBit(bitmapFor(night), word, bit)) {
+                for (long addedNight = newFrom; addedNight < night; addedNight++) {
+                    if (addedNight < from || addedNight >= to) {
+                        clearBit(nights.get((int) addedNight), word, bit);
+                    }
+                }
+                markStay(word, bit, from, to);
+                return false;
+            }
+        }
+        for (long night = from; night < to; night++) {
+            if (night < newFrom || night >= newTo) {
+                clearBit(nights.get((int) night), word, bit);
+            }
+        }
+        markStay(word, bit, newFrom, newTo);
+        return true;
+    }
+
+    // clears the markers of the stay [from, to), or returns false if that isn't one booked stay; clearing the
+    // arrival marker claims the stay, so of two callers releasing or moving it only one gets past here
+    private boolean claimStay(int word, long bit, long from, long to) {
+        AtomicLongArray first = nights.get((int) from);
+        AtomicLongArray last = nights.get((int) (to - 1));
+        if (first == null || last == null || !clearBit(first, arrival(word), bit)) {
+            return false;
+        }
+        // the claimed stay has to end on the last night: a departure before it means [from, to) is not one stay,
+        // a missing departure on it means the stay runs on
+        for (long night = from; night < to - 1; night++) {
+            AtomicLongArray bitmap = nights.get((int) night);
+            if (bitmap == null || (bitmap.get(departure(word)) & bit) != 0) {
+                setBit(first, arrival(word), bit);
+                return false;
+            }
+        }
+        if (!clearBit(last, departure(word), bit)) {
+            setBit(first, arrival(word), bit);
+            return false;
+        }
+        return true;
+    }
+
+    // clears the booked bits of a claimed stay; should one already be clear, the stay is put back as it was
+    private boolean clearStay(int word, long bit, long from, long to) {
+        for (long night = from; night < to; night++) {
+            if (!clearBit(nights.get((int) night), word, bit)) {
+                for (long clearedNight = from; clearedNight < night; clearedNight++) {
+                    setBit(nights.get((int) clearedNight), word, bit);
+                }
+                markStay(word, bit, from, to);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // arrival goes last: whoever sees it set also sees the whole stay, including its departure
+    private void markStay(int word, long bit, long from, long to) {
+        setBit(nights.get((int) (to - 1)), departure(word), bit);
+        setBit(nights.get((int) from), arrival(word), bit);
+    }
+
+    private void clearBooked(int word, long bit, long from, long to) {
+        for (long night = from; night < to; night++) {
+            clearBit(nights.get((int) night), word, bit);
+        }
+    }
+
+    private boolean isSet(long night, int word, long bit) {
+        AtomicLongArray bitmap = nights.get((int) night);
+        return bitmap != null && (bitmap.get(word) & bit) != 0;
+    }
+
+    private int arrival(int word) {
+        return wordCount + word;
+    }
+
+    private int departure(int word) {
+        return 2 * wordCount + word;
+    }
+
+    private AtomicLongArray bitmapFor(long night) {
+        AtomicLongArray booked = nights.get((int) night);
+        if (booked == null) {
+            nights.compareAndSet((int) night, null, new AtomicLongArray(3 * wordCount));
+            booked = nights.get((int) night);
+        }
+        return booked;
+    }
+
+    private void checkRange(long from, long to) {
+        if (from < 0 || to > MAX_EPOCH_DAY) {
+            throw new BusinessException();
+        }
+    }
+
+    private long rangeMask(int word, int fromRoom, int toRoom) {
+        long mask = -1L;
+        if (word == fromRoom >>> 6) {
+            mask &= -1L << fromRoom;
+        }
+        if (word == (toRoom - 1) >>> 6) {
+            mask &= -1L >>> (63 - ((toRoom - 1) & 63));
+        }
+        return mask;
+    }
+
+    private static boolean setBit(AtomicLongArray bitmap, int word, long bit) {
+        while (true) {
+            long current = bitmap.get(word);
+            if ((current & bit) != 0) {
+                return false;
+            }
+            if (bitmap.compareAndSet(word, current, current | bit)) {
+                return true;
+            }
+        }
+    }
+
+    private static boolean clearBit(AtomicLongArray bitmap, int word, long bit) {
+        while (true) {
+            long current = bitmap.get(word);
+            if ((current & bit) == 0) {
+                return false;
+            }
+            if (bitmap.compareAndSet(word, current, current & ~bit)) {
+                return true;
+            }
+        }
+    }
+
+}
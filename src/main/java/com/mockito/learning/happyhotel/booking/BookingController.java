@@ -0,0 +1,104 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+public class BookingController {
+
+    private final AsyncBookingService asyncBookingService;
+
+    public BookingController(AsyncBookingService asyncBookingService) {
+        this.asyncBookingService = asyncBookingService;
+    }
+
+    @PostMapping("/bookings")
+    @ResponseStatus(HttpStatus.CREATED)
+    public CompletableFuture<String> makeBooking(@RequestBody BookingRequest bookingRequest) {
+        return asyncBookingService.makeBooking(bookingRequest);
+    }
+
+    @PostMapping("/bookings/batch")
+    public CompletableFuture<List<BookingResult>> makeBookings(@RequestBody List<BookingRequest> bookingRequests) {
+        return asyncBookingService.makeBookings(bookingRequests);
+    }
+
+    @DeleteMapping("/bookings/{bookingId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public CompletableFuture<Void> cancelBooking(@PathVariable String bookingId) {
+        return asyncBookingService.cancelBooking(bookingId);
+    }
+
+    @GetMapping("/bookings/{bookingId}")
+    public CompletableFuture<ResponseEntity<VersionedBooking>> getBooking(@PathVariable String bookingId) {
+        return asyncBookingService.getBooking(bookingId).thenApply(booking -> booking == null
+                ? ResponseEntity.notFound().build()
+                : ResponseEntity.ok(booking));
+    }
+
+    // takes the new dates and guest count from the body and the version the client last read as a parameter
+    @PutMapping("/bookings/{bookingId}")
+    public CompletableFuture<ResponseEntity<BookingUpdate>> modifyBooking(@PathVariable String bookingId,
+                                                                          @RequestParam long version,
+                                                                          @RequestBody BookingRequest changes) {
+        return asyncBookingService.modifyBooking(bookingId, version, changes).thenApply(update ->
+                ResponseEntity.status(switch (update.getStatus()) {
+                    case UPDATED -> HttpStatus.OK;
+                    case NOT_FOUND -> HttpStatus.NOT_FOUND;
+                    case CONFLICT, NO_ROOM_AVAILABLE -> HttpStatus.CONFLICT;
+                }).body(update));
+    }
+
+    @GetMapping("/price")
+    public CompletableFuture<PriceQuote> price(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
+                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo,
+                                               @RequestParam int guestCount,
+                                               @RequestParam(defaultValue = "") List<String> currencies) {
+        return asyncBookingService.quote(new BookingRequest(null, dateFrom, dateTo, guestCount, false), currencies);
+    }
+
+    @GetMapping("/availability")
+    public CompletableFuture<List<Room>> availability(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
+                                                      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo) {
+        return asyncBookingService.getAvailableRooms(dateFrom, dateTo);
+    }
+
+    @ExceptionHandler(BusinessException.class)
+    public ResponseEntity<String> noRoomAvailable() {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("No room available");
+    }
+
+    @ExceptionHandler(UnsupportedOperationException.class)
+    public ResponseEntity<String> paymentDeclined(UnsupportedOperationException e) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> overloaded() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Too many bookings in flight, try again shortly");
+    }
+
+}
@@ -1,28 +1,193 @@
 package com.mockito.learning.happyhotel.booking;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class BookingDAO {
 
-    private final Map<String, BookingRequest> bookings = new HashMap<>();
+    private final BookingStore bookings;
+    private final IdGenerator idGenerator;
+    private final BookingIndex index = new BookingIndex();
+    // the booking each stored request key belongs to, so a request sent again finds the booking it made
+    private final Map<Long, String> idsByRequestKey = new ConcurrentHashMap<>();
 
+    public BookingDAO() {
+        this(new ShardedBookingStore(), new SnowflakeIdGenerator(0));
+    }
+
+    @Autowired
+    public BookingDAO(BookingStore bookings, IdGenerator idGenerator) {
+        this.bookings = bookings;
+        this.idGenerator = idGenerator;
+        // a journaled store comes back with the bookings it recovered
+        bookings.forEach((id, bookingRequest) -> {
+            VersionedBooking booking = bookings.getVersioned(id);
+            if (booking != null) {
+                index.add(id, booking);
+                idsByRequestKey.put(booking.getBookingRequest().getRequestKey(), id);
+            }
+        });
+    }
+
+    // null if the request already made a booking: of two attempts at one request only the first is saved
     public String save(BookingRequest bookingRequest) {
-        String id = UUID.randomUUID().toString();
-        bookings.put(id, bookingRequest);
+        long started = System.nanoTime();
+        String id = idGenerator.nextId();
+        long requestKey = bookingRequest.getRequestKey();
+        if (idsByRequestKey.putIfAbsent(requestKey, id) != null) {
+            return null;
+        }
+        try {
+            bookings.put(id, bookingRequest);
+        } catch (RuntimeException e) {
+            idsByRequestKey.remove(requestKey, id);
+            throw e;
+        }
+        indexIfCurrent(id, bookings.getVersioned(id));
+        BookingMetrics.record(BookingMetrics.PERSISTENCE, started);
         return id;
     }
 
+    // as save, for each request in order; the ids come back in request order, null where a request was already booked
+    public List<String> saveAll(List<BookingRequest> bookingRequests) {
+        List<String> ids = new ArrayList<>(bookingRequests.size());
+        Map<String, BookingRequest> batch = new LinkedHashMap<>();
+        for (BookingRequest bookingRequest : bookingRequests) {
+            String id = idGenerator.nextId();
+            if (idsByRequestKey.putIfAbsent(bookingRequest.getRequestKey(), id) != null) {
+                ids.add(null);
+            } else {
+                ids.add(id);
+                batch.put(id, bookingRequest);
+            }
+        }
+        try {
+            bookings.putAll(batch);
+        } catch (RuntimeException e) {
+            batch.forEach((id, bookingRequest) -> idsByRequestKey.remove(bookingRequest.getRequestKey(), id));
+            throw e;
+        }
+        for (String id : batch.keySet()) {
+            indexIfCurrent(id, bookings.getVersioned(id));
+        }
+        return ids;
+    }
+
+    // the booking this request made, if it is still booked under the request
+    public String findByRequest(BookingRequest bookingRequest) {
+        return idsByRequestKey.get(bookingRequest.getRequestKey());
+    }
+
     public BookingRequest get(String id) {
         return bookings.get(id);
     }
 
+    public VersionedBooking getVersioned(String id) {
+        return bookings.getVersioned(id);
+    }
+
+    // optimistic: never waits for other writers; a lost race is reported, not retried
+    public BookingUpdate update(String id, long expectedVersion, BookingRequest bookingRequest) {
+        long started = System.nanoTime();
+        VersionedBooking previous = bookings.getVersioned(id);
+        if (previous == null || previous.getVersion() != expectedVersion) {
+            return failedUpdate(previous);
+        }
+        boolean replaced = bookings.replace(id, expectedVersion, bookingRequest);
+        BookingMetrics.record(BookingMetrics.PERSISTENCE, started);
+        if (!replaced) {
+            return failedUpdate(bookings.getVersioned(id));
+        }
+        VersionedBooking updated = new VersionedBooking(bookingRequest, expectedVersion + 1);
+        // the booking now answers to the request of its new stay
+        idsByRequestKey.put(bookingRequest.getRequestKey(), id);
+        indexIfCurrent(id, updated);
+        index.remove(id, previous);
+        idsByRequestKey.remove(previous.getBookingRequest().getRequestKey(), id);
+        return BookingUpdate.updated(expectedVersion + 1);
+    }
+
     public void delete(String bookingId) {
-        bookings.remove(bookingId);
+        while (true) {
+            VersionedBooking booking = bookings.getVersioned(bookingId);
+            if (booking == null || remove(bookingId, booking)) {
+                return;
+            }
+        }
+    }
+
+    // false when the booking changed or was deleted since expectedVersion was read
+    public boolean delete(String bookingId, long expectedVersion) {
+        VersionedBooking booking = bookings.getVersioned(bookingId);
+        return booking != null && booking.getVersion() == expectedVersion && remove(bookingId, booking);
+    }
+
+    // the index answers the lookup, the store has the final say: entries of versions since replaced are skipped
+    public Map<String, BookingRequest> findByUser(String userId) {
+        Map<String, BookingRequest> found = new LinkedHashMap<>();
+        index.forUser(userId, entry -> collect(entry, found));
+        return found;
+    }
+
+    // bookings of the room whose stay overlaps [dateFrom, dateTo), by arrival date
+    public Map<String, BookingRequest> findByRoom(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+        Map<String, BookingRequest> found = new LinkedHashMap<>();
+        index.forRoom(roomId, dateFrom, dateTo, entry -> collect(entry, found));
+        return found;
+    }
+
+    // bookings whose stay overlaps [dateFrom, dateTo), by arrival date
+    public Map<String, BookingRequest> findByDates(LocalDate dateFrom, LocalDate dateTo) {
+        Map<String, BookingRequest> found = new LinkedHashMap<>();
+        index.forDates(dateFrom, dateTo, entry -> collect(entry, found));
+        return found;
+    }
+
+    private boolean remove(String bookingId, VersionedBooking booking) {
+        if (!bookings.remove(bookingId, booking.getVersion())) {
+            return false;
+        }
+        index.remove(bookingId, booking);
+        idsByRequestKey.remove(booking.getBookingRequest().getRequestKey(), bookingId);
+        return true;
+    }
+
+    // A writer that lost the race to a newer version after its own write could otherwise leave its entries behind:
+    // the newer writer may have tried to remove it before it was added. Whoever checks last sees the other's write.
+    private void indexIfCurrent(String id, VersionedBooking booking) {
+        if (booking == null) {
+            return;
+        }
+        index.add(id, booking);
+        VersionedBooking current = bookings.getVersioned(id);
+        if (current == null || current.getVersion() != booking.getVersion()) {
+            index.remove(id, booking);
+            long requestKey = booking.getBookingRequest().getRequestKey();
+            if (current == null || current.getBookingRequest().getRequestKey() != requestKey) {
+                idsByRequestKey.remove(requestKey, id);
+            }
+        }
+    }
+
+    private void collect(BookingIndex.Entry entry, Map<String, BookingRequest> found) {
+        VersionedBooking current = bookings.getVersioned(entry.bookingId());
+        if (current != null && current.getVersion() == entry.version()) {
+            found.put(entry.bookingId(), current.getBookingRequest());
+        }
+    }
+
+    private static BookingUpdate failedUpdate(VersionedBooking current) {
+        return current == null
+                ? BookingUpdate.failed(BookingUpdate.Status.NOT_FOUND)
+                : BookingUpdate.conflict(current.getVersion());
     }
 
 }
@@ -0,0 +1,131 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+
+// Secondary indexes of BookingDAO: bookings by user, by room and by arrival date, each kept in arrival order.
+// An entry stands for one version of a booking, so adding the new version and removing the old one commute, and
+// a reader can tell whether an entry still matches the stored booking. Overlap queries scan arrivals from the
+// longest stay in the set before the range start, since no booking starting earlier can reach into the range.
+class BookingIndex {
+
+    private static final Comparator<Entry> BY_ARRIVAL = Comparator.comparingLong(Entry::from)
+            .thenComparing(Entry::bookingId)
+            .thenComparingLong(Entry::version);
+
+    private final ConcurrentHashMap<String, Entries> byUser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Entries> byRoom = new ConcurrentHashMap<>();
+    private final Entries byArrival = new Entries();
+
+    record Entry(String bookingId, long version, long from, long to) {
+    }
+
+    void add(String bookingId, VersionedBooking booking) {
+        Entry entry = entryOf(bookingId, booking);
+        BookingRequest bookingRequest = booking.getBookingRequest();
+        if (bookingRequest.getUserId() != null) {
+            byUser.computeIfAbsent(bookingRequest.getUserId(), userId -> new Entries()).add(entry);
+        }
+        if (bookingRequest.getRoomId() != null) {
+            byRoom.computeIfAbsent(bookingRequest.getRoomId(), roomId -> new Entries()).add(entry);
+        }
+        byArrival.add(entry);
+    }
+
+    // the per-user and per-room sets stay behind once empty; they are small next to the bookings they held
+    void remove(String bookingId, VersionedBooking booking) {
+        Entry entry = entryOf(bookingId, booking);
+        BookingRequest bookingRequest = booking.getBookingRequest();
+        if (bookingRequest.getUserId() != null) {
+            Entries entries = byUser.get(bookingRequest.getUserId());
+            if (entries != null) {
+                entries.remove(entry);
+            }
+        }
+        if (bookingRequest.getRoomId() != null) {
+            Entries entries = byRoom.get(bookingRequest.getRoomId());
+            if (entries != null) {
+                entries.remove(entry);
+            }
+        }
+        byArrival.remove(entry);
+    }
+
+    void forUser(String userId, Consumer<Entry> action) {
+        Entries entries = byUser.get(userId);
+        if (entries != null) {
+            entries.entries.forEach(action);
+        }
+    }
+
+    // entries of the room whose stay overlaps [dateFrom, dateTo)
+    void forRoom(String roomId, LocalDate dateFrom, LocalDate dateTo, Consumer<Entry> action) {
+        Entries entries = byRoom.get(roomId);
+        if (entries != null) {
+            forOverlapping(entries, dateFrom.toEpochDay(), dateTo.toEpochDay(), action);
+        }
+    }
+
+    void forDates(LocalDate dateFrom, LocalDate dateTo, Consumer<Entry> action) {
+        forOverlapping(byArrival, dateFrom.toEpochDay(), dateTo.toEpochDay(), action);
+    }
+
+    private static void forOverlapping(Entries entries, long from, long to, Consumer<Entry> action) {
+        Entry first = new Entry("", Long.MIN_VALUE, from - entries.longestStay(), 0);
+        Entry last = new Entry("", Long.MIN_VALUE, to, 0);
+        for (Entry entry : entries.entries.subSet(first, true, last, false)) {
+            if (entry.to() > from) {
+                action.accept(entry);
+            }
+        }
+    }
+
+    // bookings without dates sort first and never overlap a range
+    private static Entry entryOf(String bookingId, VersionedBooking booking) {
+        BookingRequest bookingRequest = booking.getBookingRequest();
+        if (bookingRequest.getDateFrom() == null || bookingRequest.getDateTo() == null) {
+            return new Entry(bookingId, booking.getVersion(), Long.MIN_VALUE, Long.MIN_VALUE);
+        }
+        return new Entry(bookingId, booking.getVersion(), bookingRequest.getDateFrom().toEpochDay(),
+                bookingRequest.getDateTo().toEpochDay());
+    }
+
+    // the entries of one index with a count of their stay lengths, so the longest stay shrinks again when it goes
+    private static class Entries {
+
+        private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>(BY_ARRIVAL);
+        private final ConcurrentSkipListMap<Long, Integer> stayLengths = new ConcurrentSkipListMap<>();
+
+        // the length is counted before the entry shows and uncounted after it is gone, so it always covers
+        // every entry a reader can see
+        void add(Entry entry) {
+            stayLengths.merge(entry.to() - entry.from(), 1, Integer::sum);
+            if (!entries.add(entry)) {
+                uncount(entry);
+            }
+        }
+
+        void remove(Entry entry) {
+            if (entries.remove(entry)) {
+                uncount(entry);
+            }
+        }
+
+        long longestStay() {
+            Map.Entry<Long, Integer> longest = stayLengths.lastEntry();
+            return longest == null ? 0 : longest.getKey();
+        }
+
+        private void uncount(Entry entry) {
+            stayLengths.computeIfPresent(entry.to() - entry.from(), (length, count) -> count == 1 ? null : count - 1);
+        }
+
+    }
+
+}
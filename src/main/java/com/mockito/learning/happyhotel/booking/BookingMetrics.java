@@ -0,0 +1,96 @@
+package com.mockito.learning.happyhotel.booking;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Meters live on the global registry so plain `new`-ed services and Mockito spies are instrumented too;
+// Spring Boot adds its own registry to the global one, which is how they end up on /actuator/metrics.
+// Until a registry is added the meters are no-ops.
+final class BookingMetrics {
+
+    static final Timer BOOKING = booking("single");
+    static final Timer BATCH_BOOKING = booking("batch");
+
+    static final Timer ROOM_SEARCH = stage("room_search");
+    static final Timer PRICING = stage("pricing");
+    static final Timer PAYMENT = stage("payment");
+    // from reserving the room to confirming its hold, i.e. how long a room is held for a booking that goes through
+    static final Timer HOLD = stage("hold");
+    static final Timer PERSISTENCE = stage("persistence");
+    static final Timer CONFIRMATION = stage("confirmation");
+
+    static final Counter DEAD_LETTERS = Counter.builder("happyhotel.mail.outbox.dead_letters")
+            .register(Metrics.globalRegistry);
+    static final Counter SNAPSHOT_FAILURES = Counter.builder("happyhotel.bookings.snapshot.failures")
+            .register(Metrics.globalRegistry);
+    static final Counter JOURNAL_FLUSH_FAILURES = Counter.builder("happyhotel.journal.flush.failures")
+            .register(Metrics.globalRegistry);
+
+    private BookingMetrics() {
+    }
+
+    // callers take System.nanoTime() themselves, which keeps the hot path free of lambdas and Timer.Sample objects
+    static void record(Timer timer, long startedNanos) {
+        timer.record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    static void failure(String stage, Class<? extends RuntimeException> cause) {
+        Counter.builder("happyhotel.booking.failures")
+                .tag("stage", stage)
+                .tag("cause", cause.getSimpleName())
+                .register(Metrics.globalRegistry)
+                .increment();
+    }
+
+    static void shards(ShardedBookingStore store) {
+        shards(store, Metrics.globalRegistry);
+    }
+
+    static void quotes(Cache<?, ?> quotes) {
+        CaffeineCacheMetrics.monitor(Metrics.globalRegistry, quotes, "happyhotel.quotes");
+    }
+
+    // size, reads and writes per shard, so a hot or lopsided shard shows up next to the booking timers
+    static void shards(ShardedBookingStore store, MeterRegistry registry) {
+        for (int i = 0; i < store.getShardCount(); i++) {
+            int shard = i;
+            String tag = Integer.toString(shard);
+            Gauge.builder("happyhotel.bookings.shard.size", store, s -> s.getShardStats(shard).getSize())
+                    .tag("shard", tag)
+                    .register(registry);
+            FunctionCounter.builder("happyhotel.bookings.shard.reads", store, s -> s.getShardStats(shard).getReads())
+                    .tag("shard", tag)
+                    .register(registry);
+            FunctionCounter.builder("happyhotel.bookings.shard.writes", store, s -> s.getShardStats(shard).getWrites())
+                    .tag("shard", tag)
+                    .register(registry);
+        }
+    }
+
+    private static Timer booking(String mode) {
+        return histogram(Timer.builder("happyhotel.booking").tag("mode", mode));
+    }
+
+    private static Timer stage(String stage) {
+        return histogram(Timer.builder("happyhotel.booking.stage").tag("stage", stage));
+    }
+
+    // fixed, bounded percentile buckets: recording is a bucket lookup plus an atomic increment
+    private static Timer histogram(Timer.Builder builder) {
+        return builder
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(Metrics.globalRegistry);
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+// compact binary form of a stored booking: dates as epoch-day ints, strings as length-prefixed UTF-8
+class BookingRecordCodec {
+
+    private static final int PREPAID = 1;
+
+    private BookingRecordCodec() {
+    }
+
+    static byte[] encode(String bookingId, BookingRequest bookingRequest, long version) {
+        byte[] id = utf8(bookingId);
+        byte[] userId = utf8(bookingRequest.getUserId());
+        byte[] roomId = utf8(bookingRequest.getRoomId());
+        ByteBuffer buffer = ByteBuffer.allocate(size(id) + size(userId) + size(roomId) + 4 + 4 + 2 + 1 + 8 + 8);
+        putString(buffer, id);
+        putString(buffer, userId);
+        buffer.putInt((int) bookingRequest.getDateFrom().toEpochDay());
+        buffer.putInt((int) bookingRequest.getDateTo().toEpochDay());
+        buffer.putShort((short) bookingRequest.getGuestCount());
+        buffer.put((byte) (bookingRequest.isPrepaid() ? PREPAID : 0));
+        putString(buffer, roomId);
+        buffer.putLong(bookingRequest.getRequestKey());
+        buffer.putLong(version);
+        return buffer.array();
+    }
+
+    static byte[] encodeId(String bookingId) {
+        byte[] id = utf8(bookingId);
+        ByteBuffer buffer = ByteBuffer.allocate(size(id));
+        putString(buffer, id);
+        return buffer.array();
+    }
+
+    // the booking id and the version that was deleted
+    static byte[] encodeDelete(String bookingId, long version) {
+        byte[] id = utf8(bookingId);
+        ByteBuffer buffer = ByteBuffer.allocate(size(id) + 8);
+        putString(buffer, id);
+        buffer.putLong(version);
+        return buffer.array();
+    }
+
+    static String decodeId(ByteBuffer buffer) {
+        return getString(buffer);
+    }
+
+    // reads what encode wrote after the booking id
+    static BookingRequest decodeBooking(ByteBuffer buffer) {
+        String userId = getString(buffer);
+        LocalDate dateFrom = LocalDate.ofEpochDay(buffer.getInt());
+        LocalDate dateTo = LocalDate.ofEpochDay(buffer.getInt());
+        int guestCount = buffer.getShort();
+        boolean prepaid = (buffer.get() & PREPAID) != 0;
+        String roomId = getString(buffer);
+        long requestKey = buffer.getLong();
+        return new BookingRequest(userId, dateFrom, dateTo, guestCount, prepaid, roomId, requestKey);
+    }
+
+    // reads what encode wrote after the booking, or encodeDelete after the id
+    static long decodeVersion(ByteBuffer buffer) {
+        return buffer.getLong();
+    }
+
+    static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+        } else {
+            buffer.putShort((short) value.length);
+            buffer.put(value);
+        }
+    }
+
+    static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static int size(byte[] value) {
+        return 2 + (value == null ? 0 : value.length);
+    }
+
+}
@@ -1,7 +1,11 @@
 package com.mockito.learning.happyhotel.booking;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+
 import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
 
+// Immutable, so requests are safe to share between threads and to use as hash keys; the hash is computed once.
 public class BookingRequest {
 
     private final String userId;
@@ -9,15 +13,36 @@ public class BookingRequest {
     private final LocalDate dateTo;
     private final int guestCount;
     private final boolean prepaid;
-    private String roomId;
+    private final String roomId;
+    // identifies the booking attempt, e.g. for payment idempotency; not part of equals, which compares the stay
+    private final long requestKey;
+    private final int hash;
 
+    // every new request is a new attempt
     public BookingRequest(String userId, LocalDate dateFrom, LocalDate dateTo, int guestCount, boolean prepaid) {
+        this(userId, dateFrom, dateTo, guestCount, prepaid, null, newRequestKey());
+    }
+
+    // clients never choose the room, so JSON requests are always read without one; a client that retries with the
+    // same requestId is making the same attempt again
+    @JsonCreator
+    static BookingRequest fromJson(String userId, LocalDate dateFrom, LocalDate dateTo, int guestCount,
+                                   boolean prepaid, String requestId) {
+        return new BookingRequest(userId, dateFrom, dateTo, guestCount, prepaid, null,
+                requestId == null ? newRequestKey() : requestKey(userId, requestId));
+    }
+
+    BookingRequest(String userId, LocalDate dateFrom, LocalDate dateTo, int guestCount, boolean prepaid,
+                   String roomId, long requestKey) {
         super();
         this.userId = userId;
         this.dateFrom = dateFrom;
         this.dateTo = dateTo;
         this.guestCount = guestCount;
         this.prepaid = prepaid;
+        this.roomId = roomId;
+        this.requestKey = requestKey;
+        this.hash = computeHashCode();
     }
 
     public String getUserId() {
@@ -44,12 +69,40 @@ public class BookingRequest {
         return roomId;
     }
 
-    public void setRoomId(String roomId) {
-        this.roomId = roomId;
+    // never 0, which the payment ledger uses to mark an empty slot
+    long getRequestKey() {
+        return requestKey;
+    }
+
+    // the same request with the room assigned
+    public BookingRequest withRoomId(String roomId) {
+        return new BookingRequest(userId, dateFrom, dateTo, guestCount, prepaid, roomId, requestKey);
+    }
+
+    private static long newRequestKey() {
+        long key;
+        do {
+            key = ThreadLocalRandom.current().nextLong();
+        } while (key == 0);
+        return key;
+    }
+
+    // request ids are only unique per client, so the user is part of the key
+    private static long requestKey(String userId, String requestId) {
+        long hash = 0xcbf29ce484222325L;
+        String scoped = (userId == null ? "" : userId) + '\n' + requestId;
+        for (int i = 0; i < scoped.length(); i++) {
+            hash = (hash ^ scoped.charAt(i)) * 0x100000001b3L;
+        }
+        return hash != 0 ? hash : 1;
     }
 
     @Override
     public int hashCode() {
+        return hash;
+    }
+
+    private int computeHashCode() {
         final int prime = 31;
         int result = 1;
         result = prime * result
@@ -71,6 +124,8 @@ public class BookingRequest {
         if (getClass() != obj.getClass())
             return false;
         BookingRequest other = (BookingRequest) obj;
+        if (hash != other.hash)
+            return false;
         if (dateFrom == null) {
             if (other.dateFrom != null)
                 return false;
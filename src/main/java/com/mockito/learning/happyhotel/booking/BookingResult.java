@@ -0,0 +1,35 @@
+package com.mockito.learning.happyhotel.booking;
+
+public class BookingResult {
+
+    public enum Status {
+        BOOKED,
+        NO_ROOM_AVAILABLE,
+        PAYMENT_DECLINED
+    }
+
+    private final Status status;
+    private final String bookingId;
+
+    private BookingResult(Status status, String bookingId) {
+        this.status = status;
+        this.bookingId = bookingId;
+    }
+
+    public static BookingResult booked(String bookingId) {
+        return new BookingResult(Status.BOOKED, bookingId);
+    }
+
+    public static BookingResult failed(Status status) {
+        return new BookingResult(status, null);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getBookingId() {
+        return bookingId;
+    }
+
+}
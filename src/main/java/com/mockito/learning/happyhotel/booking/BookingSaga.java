@@ -0,0 +1,78 @@
+package com.mockito.learning.happyhotel.booking;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Runs a booking as reserve -> pay -> confirm on the room holds of RoomService. A reservation only holds the room
+// for a short time: if the booking isn't confirmed by then the hold expires and the room goes back on sale.
+// Compensations for a failed booking, releasing its hold and refunding its charge, run on a background thread so
+// the failing request returns at once.
+@Component
+public class BookingSaga {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingSaga.class);
+
+    private final Duration holdTime;
+    private final ThreadPoolExecutor compensator;
+
+    public BookingSaga() {
+        this(30_000);
+    }
+
+    @Autowired
+    public BookingSaga(@Value("${happyhotel.bookings.hold-ms:30000}") long holdMillis) {
+        this.holdTime = Duration.ofMillis(holdMillis);
+        this.compensator = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "booking-compensator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compensator.allowCoreThreadTimeOut(true);
+    }
+
+    // claims a room for the booking, held until the booking is confirmed or the hold expires
+    public RoomHold reserve(RoomService roomService, BookingRequest bookingRequest) {
+        return roomService.holdRoom(bookingRequest, holdTime);
+    }
+
+    // a hold per request, null where no room is left
+    public List<RoomHold> reserveAll(RoomService roomService, List<BookingRequest> bookingRequests) {
+        return roomService.holdRooms(bookingRequests, holdTime);
+    }
+
+    // false when the hold has already expired, in which case the room may belong to someone else by now
+    public boolean confirm(RoomService roomService, RoomHold hold) {
+        return roomService.confirmHold(hold);
+    }
+
+    // undoes a failed booking off the calling thread: gives the room back unless the hold expired already, then
+    // runs the refund, if any
+    public void compensate(RoomService roomService, RoomHold hold, Runnable refund) {
+        compensator.execute(() -> {
+            try {
+                roomService.releaseHold(hold);
+                if (refund != null) {
+                    refund.run();
+                }
+            } catch (RuntimeException e) {
+                log.error("Compensating a failed booking failed", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        compensator.shutdown();
+    }
+
+}
@@ -1,63 +1,395 @@
 package com.mockito.learning.happyhotel.booking;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.time.temporal.ChronoUnit;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 @Service
 public class BookingService {
 
+    private static final Logger log = LoggerFactory.getLogger(BookingService.class);
+
     private final PaymentService paymentService;
     private final RoomService roomService;
     private final BookingDAO bookingDAO;
     private final MailSender mailSender;
+    private final PricingEngine pricingEngine;
+    private final CurrencyConverter currencyConverter;
+    private final QuoteCache quoteCache;
+    private final BookingSaga bookingSaga;
 
-    private final static double BASE_PRICE_USD = 50.0;
+    // stage tags of the failure counter, matching the stage timers in BookingMetrics
+    private static final String ROOM_SEARCH = "room_search";
+    private static final String PRICING = "pricing";
+    private static final String PAYMENT = "payment";
+    private static final String HOLD = "hold";
+    private static final String PERSISTENCE = "persistence";
+    private static final String CONFIRMATION = "confirmation";
 
     public int getAvailablePlaceCount() {
-        return roomService.getAvailableRooms()
-                .stream()
-                .map(room -> room.getCapacity())
-                .reduce(0, Integer::sum);
+        return roomService.getAvailablePlaceCount();
     }
 
     public double calculatePrice(BookingRequest bookingRequest) {
-        long nights = ChronoUnit.DAYS.between(bookingRequest.getDateFrom(), bookingRequest.getDateTo());
-        return BASE_PRICE_USD * bookingRequest.getGuestCount() * nights;
+        return pricingEngine.price(bookingRequest);
     }
 
     public double calculatePriceEuro(BookingRequest bookingRequest) {
-        return CurrencyConverter.toEuro(calculatePrice(bookingRequest));
+        return currencyConverter.toEuro(calculatePrice(bookingRequest));
+    }
+
+    // all currencies of a quote use the same rate snapshot; repeated searches are served from the cache
+    public PriceQuote quote(BookingRequest bookingRequest, List<String> currencies) {
+        ExchangeRates rates = currencyConverter.getRates();
+        return quoteCache.get(bookingRequest, currencies, pricingEngine, rates, () -> {
+            double priceUsd = calculatePrice(bookingRequest);
+            Map<String, Double> prices = new LinkedHashMap<>();
+            for (String currency : currencies) {
+                prices.put(currency, rates.convert(priceUsd, currency));
+            }
+            return new PriceQuote(priceUsd, rates.convert(priceUsd, CurrencyConverter.EUR), prices);
+        });
     }
 
+    // a request sent again, e.g. by a client retrying after a timeout, gets the booking it already made
     public String makeBooking(BookingRequest bookingRequest) {
-        String roomId = roomService.findAvailableRoomId(bookingRequest);
-        double price = calculatePrice(bookingRequest);
+        String earlierBookingId = bookingDAO.findByRequest(bookingRequest);
+        if (earlierBookingId != null) {
+            return earlierBookingId;
+        }
+        long started = System.nanoTime();
+        String stage = CONFIRMATION;
+        try {
+            // a saturated outbox turns the booking away (503) before anything is reserved or charged
+            mailSender.checkCapacity(1);
+            stage = ROOM_SEARCH;
+            // reserve: the claimed room is only held until the booking is confirmed or the hold expires
+            RoomHold hold = bookingSaga.reserve(roomService, bookingRequest);
+            String roomId = hold.getRoomId();
+            long reserved = System.nanoTime();
+            boolean charged = false;
+            String bookingId;
+            try {
+                stage = PRICING;
+                long pricingStarted = System.nanoTime();
+                double price = calculatePrice(bookingRequest);
+                BookingMetrics.record(BookingMetrics.PRICING, pricingStarted);
 
-        if (bookingRequest.isPrepaid()) {
-            paymentService.pay(bookingRequest, price);
+                if (bookingRequest.isPrepaid()) {
+                    stage = PAYMENT;
+                    // a retry of an already paid booking gets the earlier payment back, which is not ours to refund
+                    String earlierPaymentId = paymentService.getPaymentId(bookingRequest);
+                    String paymentId = paymentService.pay(bookingRequest, price);
+                    charged = paymentId != null && !paymentId.equals(earlierPaymentId);
+                }
+
+                stage = HOLD;
+                if (!bookingSaga.confirm(roomService, hold)) {
+                    throw new BusinessException();
+                }
+                BookingMetrics.record(BookingMetrics.HOLD, reserved);
+                stage = PERSISTENCE;
+                bookingId = bookingDAO.save(bookingRequest.withRoomId(roomId));
+            } catch (RuntimeException e) {
+                bookingSaga.compensate(roomService, hold, charged ? () -> paymentService.refund(bookingRequest) : null);
+                throw e;
+            }
+            if (bookingId == null) {
+                // an attempt at the same request running alongside saved first; its booking keeps the payment
+                bookingSaga.compensate(roomService, hold, null);
+                return bookingDAO.findByRequest(bookingRequest);
+            }
+            sendConfirmation(bookingId);
+            BookingMetrics.record(BookingMetrics.BOOKING, started);
+            return bookingId;
+        } catch (RuntimeException e) {
+            BookingMetrics.failure(stage, e.getClass());
+            throw e;
         }
+    }
 
-        bookingRequest.setRoomId(roomId);
-        String bookingId = bookingDAO.save(bookingRequest);
-        roomService.bookRoom(roomId);
-        mailSender.sendBookingConfirmation(bookingId);
-        return bookingId;
+    // the booking stands once it is confirmed and saved; a confirmation that can't be queued is counted and logged
+    // rather than failing, or undoing, the booking
+    private void sendConfirmation(String bookingId) {
+        try {
+            mailSender.sendBookingConfirmation(bookingId);
+        } catch (RuntimeException e) {
+            BookingMetrics.failure(CONFIRMATION, e.getClass());
+            log.warn("Could not queue the confirmation for booking {}", bookingId, e);
+        }
     }
 
+    public List<BookingResult> makeBookings(List<BookingRequest> bookingRequests) {
+        long started = System.nanoTime();
+        mailSender.checkCapacity(bookingRequests.size());
+        BookingResult[] results = new BookingResult[bookingRequests.size()];
+        // requests sent again get the bookings they already made, one listed twice shares the result of its first
+        // listing, the others claim rooms
+        List<Integer> unbooked = new ArrayList<>();
+        List<BookingRequest> unbookedRequests = new ArrayList<>();
+        Map<Long, Integer> firstListings = new HashMap<>();
+        Map<Integer, Integer> repeats = new LinkedHashMap<>();
+        for (int i = 0; i < bookingRequests.size(); i++) {
+            String earlierBookingId = bookingDAO.findByRequest(bookingRequests.get(i));
+            Integer firstListing = firstListings.putIfAbsent(bookingRequests.get(i).getRequestKey(), i);
+            if (earlierBookingId != null) {
+                results[i] = BookingResult.booked(earlierBookingId);
+            } else if (firstListing != null) {
+                repeats.put(i, firstListing);
+            } else {
+                unbooked.add(i);
+                unbookedRequests.add(bookingRequests.get(i));
+            }
+        }
+        // reserve: every claimed room is only held until its booking is confirmed or the hold expires
+        RoomHold[] holds = new RoomHold[bookingRequests.size()];
+        List<RoomHold> reserved = unbookedRequests.isEmpty()
+                ? List.of() : bookingSaga.reserveAll(roomService, unbookedRequests);
+        for (int j = 0; j < reserved.size(); j++) {
+            holds[unbooked.get(j)] = reserved.get(j);
+        }
+
+        List<Integer> prepaid = new ArrayList<>();
+        List<BookingRequest> prepaidRequests = new ArrayList<>();
+        List<Double> prices = new ArrayList<>();
+        for (int i : unbooked) {
+            BookingRequest bookingRequest = bookingRequests.get(i);
+            if (holds[i] == null) {
+                results[i] = BookingResult.failed(BookingResult.Status.NO_ROOM_AVAILABLE);
+                BookingMetrics.failure(ROOM_SEARCH, BusinessException.class);
+            } else if (bookingRequest.isPrepaid()) {
+                prepaid.add(i);
+                prepaidRequests.add(bookingRequest);
+                prices.add(calculatePrice(bookingRequest));
+            }
+        }
+        // only payments this batch made are refunded if it can't be saved; a retried item gets its earlier one back
+        boolean[] charged = new boolean[bookingRequests.size()];
+        if (!prepaidRequests.isEmpty()) {
+            List<String> earlierPaymentIds = new ArrayList<>(prepaidRequests.size());
+            for (BookingRequest bookingRequest : prepaidRequests) {
+                earlierPaymentIds.add(paymentService.getPaymentId(bookingRequest));
+            }
+            RuntimeException[] declines = new RuntimeException[prepaidRequests.size()];
+            List<String> paymentIds = paymentService.payAll(prepaidRequests, prices,
+                    (declined, j) -> declines[j] = declined);
+            for (int j = 0; j < paymentIds.size(); j++) {
+                int i = prepaid.get(j);
+                if (paymentIds.get(j) == null) {
+                    bookingSaga.compensate(roomService, holds[i], null);
+                    results[i] = BookingResult.failed(BookingResult.Status.PAYMENT_DECLINED);
+                    // the cause payAll declined with; a payment service that gives none counts as a business refusal
+                    BookingMetrics.failure(PAYMENT,
+                            declines[j] != null ? declines[j].getClass() : BusinessException.class);
+                } else {
+                    charged[i] = !paymentIds.get(j).equals(earlierPaymentIds.get(j));
+                }
+            }
+        }
+
+        // confirm: a hold that expired during payment has lost its room, and its charge is refunded
+        List<Integer> booked = new ArrayList<>();
+        List<BookingRequest> toSave = new ArrayList<>();
+        for (int i : unbooked) {
+            if (results[i] != null) {
+                continue;
+            }
+            BookingRequest bookingRequest = bookingRequests.get(i);
+            if (bookingSaga.confirm(roomService, holds[i])) {
+                booked.add(i);
+                toSave.add(bookingRequest.withRoomId(holds[i].getRoomId()));
+            } else {
+                bookingSaga.compensate(roomService, holds[i], refund(bookingRequest, charged[i]));
+                results[i] = BookingResult.failed(BookingResult.Status.NO_ROOM_AVAILABLE);
+                BookingMetrics.failure(HOLD, BusinessException.class);
+            }
+        }
+        List<String> bookingIds;
+        try {
+            bookingIds = toSave.isEmpty() ? List.of() : bookingDAO.saveAll(toSave);
+        } catch (RuntimeException e) {
+            // nothing of the batch was saved: give every room back and refund what was charged, as makeBooking does
+            for (int i : booked) {
+                bookingSaga.compensate(roomService, holds[i], refund(bookingRequests.get(i), charged[i]));
+            }
+            BookingMetrics.failure(PERSISTENCE, e.getClass());
+            throw e;
+        }
+        List<String> savedIds = new ArrayList<>(bookingIds.size());
+        for (int j = 0; j < bookingIds.size(); j++) {
+            int i = booked.get(j);
+            if (bookingIds.get(j) == null) {
+                // an attempt at the same request running alongside saved first; its booking keeps the payment
+                bookingSaga.compensate(roomService, holds[i], null);
+                results[i] = BookingResult.booked(bookingDAO.findByRequest(bookingRequests.get(i)));
+            } else {
+                results[i] = BookingResult.booked(bookingIds.get(j));
+                savedIds.add(bookingIds.get(j));
+            }
+        }
+        repeats.forEach((i, firstListing) -> results[i] = results[firstListing]);
+        if (!savedIds.isEmpty()) {
+            sendConfirmations(savedIds);
+        }
+        BookingMetrics.record(BookingMetrics.BATCH_BOOKING, started);
+        return Arrays.asList(results);
+    }
+
+    private Runnable refund(BookingRequest bookingRequest, boolean charged) {
+        return charged ? () -> paymentService.refund(bookingRequest) : null;
+    }
+
+    private void sendConfirmations(List<String> bookingIds) {
+        try {
+            mailSender.sendBookingConfirmations(bookingIds);
+        } catch (RuntimeException e) {
+            BookingMetrics.failure(CONFIRMATION, e.getClass());
+            log.warn("Could not queue the confirmations for bookings {}", bookingIds, e);
+        }
+    }
+
+    public VersionedBooking getBooking(String id) {
+        return bookingDAO.getVersioned(id);
+    }
+
+    // of concurrent cancellations and modifications only the one whose versioned delete wins gives the room back and
+    // refunds, a lost delete reads the booking again; cancelling a booking that is already gone does nothing
     public void cancelBooking(String id) {
-        BookingRequest request = bookingDAO.get(id);
-        roomService.unbookRoom(request.getRoomId());
-        bookingDAO.delete(id);
+        while (true) {
+            VersionedBooking booking = bookingDAO.getVersioned(id);
+            if (booking == null) {
+                return;
+            }
+            if (bookingDAO.delete(id, booking.getVersion())) {
+                BookingRequest request = booking.getBookingRequest();
+                roomService.releaseStay(request.getRoomId(), request.getDateFrom(), request.getDateTo());
+                if (request.isPrepaid()) {
+                    paymentService.refund(request);
+                }
+                return;
+            }
+        }
+    }
+
+    // Moves a booking to new dates or a new guest count, if it is still at expectedVersion. The new room is claimed,
+    // and a prepaid stay charged, before the versioned write; the writer that loses the write undoes both and gets
+    // a CONFLICT back, the winner releases the old room and refunds the old stay.
+    // The booked room is tried first: a stay that keeps or touches some of its nights grows in place to cover the
+    // old and the new ones, so even a full hotel can extend it, and shrinks to the new nights once written.
+    // Nothing waits: whoever wins a versioned write of the booking releases the stay covering the dates it replaced,
+    // grown or not, and a grown stay that was released meanwhile leaves nothing for its grower to shrink.
+    public BookingUpdate modifyBooking(String id, long expectedVersion, LocalDate dateFrom, LocalDate dateTo,
+                                       int guestCount) {
+        VersionedBooking current = bookingDAO.getVersioned(id);
+        if (current == null) {
+            return BookingUpdate.failed(BookingUpdate.Status.NOT_FOUND);
+        }
+        if (current.getVersion() != expectedVersion) {
+            return BookingUpdate.conflict(current.getVersion());
+        }
+        BookingRequest booking = current.getBookingRequest();
+        if (dateFrom.equals(booking.getDateFrom()) && dateTo.equals(booking.getDateTo())
+                && guestCount == booking.getGuestCount()) {
+            return BookingUpdate.updated(expectedVersion);
+        }
+        BookingRequest changed = new BookingRequest(booking.getUserId(), dateFrom, dateTo, guestCount,
+                booking.isPrepaid());
+
+        LocalDate heldFrom = earlier(dateFrom, booking.getDateFrom());
+        LocalDate heldTo = later(dateTo, booking.getDateTo());
+        boolean inPlace = guestCount == booking.getGuestCount() && dateFrom.isBefore(dateTo)
+                && !dateFrom.isAfter(booking.getDateTo()) && !dateTo.isBefore(booking.getDateFrom())
+                && roomService.moveStay(booking.getRoomId(), booking.getDateFrom(), booking.getDateTo(),
+                heldFrom, heldTo);
+        String roomId = booking.getRoomId();
+        if (!inPlace) {
+            try {
+                roomId = roomService.claimAvailableRoomId(changed);
+            } catch (BusinessException e) {
+                return BookingUpdate.failed(BookingUpdate.Status.NO_ROOM_AVAILABLE);
+            }
+        }
+        boolean charged = false;
+        BookingUpdate update;
+        try {
+            if (changed.isPrepaid()) {
+                String earlierPaymentId = paymentService.getPaymentId(changed);
+                String paymentId = paymentService.pay(changed, calculatePrice(changed));
+                charged = paymentId != null && !paymentId.equals(earlierPaymentId);
+            }
+            update = bookingDAO.update(id, expectedVersion, changed.withRoomId(roomId));
+        } catch (RuntimeException e) {
+            undoModification(roomId, booking, changed, inPlace, charged);
+            throw e;
+        }
+        if (update.getStatus() != BookingUpdate.Status.UPDATED) {
+            undoModification(roomId, booking, changed, inPlace, charged);
+            return update;
+        }
+        if (inPlace) {
+            // false if a change or cancellation of the new version has released the grown stay already
+            roomService.moveStay(roomId, heldFrom, heldTo, dateFrom, dateTo);
+        } else {
+            roomService.releaseStay(booking.getRoomId(), booking.getDateFrom(), booking.getDateTo());
+        }
+        if (booking.isPrepaid()) {
+            paymentService.refund(booking);
+        }
+        return update;
+    }
+
+    private void undoModification(String roomId, BookingRequest booking, BookingRequest changed, boolean inPlace,
+                                  boolean charged) {
+        if (inPlace) {
+            // false if the winner of the write has released the grown stay already
+            roomService.moveStay(roomId, earlier(changed.getDateFrom(), booking.getDateFrom()),
+                    later(changed.getDateTo(), booking.getDateTo()), booking.getDateFrom(), booking.getDateTo());
+        } else {
+            roomService.unbookRoom(roomId, changed.getDateFrom(), changed.getDateTo());
+        }
+        if (charged) {
+            paymentService.refund(changed);
+        }
+    }
+
+    private static LocalDate earlier(LocalDate date, LocalDate other) {
+        return date.isBefore(other) ? date : other;
+    }
+
+    private static LocalDate later(LocalDate date, LocalDate other) {
+        return date.isAfter(other) ? date : other;
     }
 
+    // the original four collaborators; pricing, rates, quotes and holds get their defaults
     public BookingService(PaymentService paymentService, RoomService roomService, BookingDAO bookingDAO,
                           MailSender mailSender) {
+        this(paymentService, roomService, bookingDAO, mailSender, new PricingEngine(), new CurrencyConverter(),
+                new QuoteCache(), new BookingSaga());
+    }
+
+    @Autowired
+    public BookingService(PaymentService paymentService, RoomService roomService, BookingDAO bookingDAO,
+                          MailSender mailSender, PricingEngine pricingEngine, CurrencyConverter currencyConverter,
+                          QuoteCache quoteCache, BookingSaga bookingSaga) {
         super();
-        this.paymentService = paymentService;
-        this.roomService = roomService;
-        this.bookingDAO = bookingDAO;
-        this.mailSender = mailSender;
+        this.paymentService = Objects.requireNonNull(paymentService);
+        this.roomService = Objects.requireNonNull(roomService);
+        this.bookingDAO = Objects.requireNonNull(bookingDAO);
+        this.mailSender = Objects.requireNonNull(mailSender);
+        this.pricingEngine = Objects.requireNonNull(pricingEngine);
+        this.currencyConverter = Objects.requireNonNull(currencyConverter);
+        this.quoteCache = Objects.requireNonNull(quoteCache);
+        this.bookingSaga = Objects.requireNonNull(bookingSaga);
     }
 
 }
@@ -0,0 +1,33 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+public interface BookingStore {
+
+    void put(String bookingId, BookingRequest bookingRequest);
+
+    void putAll(Map<String, BookingRequest> bookings);
+
+    BookingRequest get(String bookingId);
+
+    void remove(String bookingId);
+
+    // the booking with the version of its last write, or null; every write to a booking raises its version
+    VersionedBooking getVersioned(String bookingId);
+
+    // compare-and-swap: writes only if the booking is still at expectedVersion, false if it changed or went since
+    boolean replace(String bookingId, long expectedVersion, BookingRequest bookingRequest);
+
+    // removes the booking only if it is still at expectedVersion
+    boolean remove(String bookingId, long expectedVersion);
+
+    // writes the booking at exactly this version, e.g. when recovering it from a journal
+    void restore(String bookingId, BookingRequest bookingRequest, long version);
+
+    int size();
+
+    // weakly consistent: sees every booking present for the whole iteration, may or may not see concurrent changes
+    void forEach(BiConsumer<String, BookingRequest> action);
+
+}
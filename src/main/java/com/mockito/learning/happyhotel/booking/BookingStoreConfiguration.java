@@ -0,0 +1,33 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class BookingStoreConfiguration {
+
+    @Bean
+    public BookingStore bookingStore(@Value("${happyhotel.bookings.shards:0}") int shards,
+                                     @Value("${happyhotel.bookings.store:sharded}") String layout,
+                                     JournalSettings journalSettings) {
+        BookingStore store;
+        if ("columnar".equalsIgnoreCase(layout)) {
+            store = shards > 0 ? new ColumnarBookingStore(shards) : new ColumnarBookingStore();
+        } else {
+            ShardedBookingStore shardedStore = shards > 0 ? new ShardedBookingStore(shards) : new ShardedBookingStore();
+            BookingMetrics.shards(shardedStore);
+            store = shardedStore;
+        }
+        if (journalSettings.isEnabled()) {
+            JournaledBookingStore journaledStore = new JournaledBookingStore(journalSettings.getDirectory(),
+                    journalSettings::open, store);
+            if (journalSettings.getSnapshotIntervalMillis() > 0) {
+                journaledStore.scheduleSnapshots(journalSettings.getSnapshotIntervalMillis());
+            }
+            store = journaledStore;
+        }
+        return store;
+    }
+
+}
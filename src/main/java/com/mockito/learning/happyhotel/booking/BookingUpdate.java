@@ -0,0 +1,42 @@
+package com.mockito.learning.happyhotel.booking;
+
+public class BookingUpdate {
+
+    public enum Status {
+        UPDATED,
+        // another writer changed the booking since the expected version was read
+        CONFLICT,
+        NOT_FOUND,
+        NO_ROOM_AVAILABLE
+    }
+
+    private final Status status;
+    private final long version;
+
+    private BookingUpdate(Status status, long version) {
+        this.status = status;
+        this.version = version;
+    }
+
+    public static BookingUpdate updated(long version) {
+        return new BookingUpdate(Status.UPDATED, version);
+    }
+
+    // carries the version that won, so the caller can re-read and retry
+    public static BookingUpdate conflict(long currentVersion) {
+        return new BookingUpdate(Status.CONFLICT, currentVersion);
+    }
+
+    public static BookingUpdate failed(Status status) {
+        return new BookingUpdate(status, 0);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+}
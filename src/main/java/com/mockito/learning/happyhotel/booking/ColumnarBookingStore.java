@@ -0,0 +1,285 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+// Memory-compact store: bookings live in primitive columns, dates as epoch days and user and room ids dictionary
+// coded, and snowflake booking ids are indexed by their 64-bit number instead of their string. A booking takes about
+// 76 bytes of heap here, against about 270 bytes as a versioned BookingRequest with its dates, id string and map node.
+// get materialises a BookingRequest view of the stored columns.
+public class ColumnarBookingStore implements BookingStore {
+
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final byte OCCUPIED = 1;
+    private static final byte PREPAID = 2;
+    private static final long ANY_VERSION = -1;
+
+    private final StringDictionary userIds = new StringDictionary();
+    private final StringDictionary roomIds = new StringDictionary();
+    private final Shard[] shards;
+    private final int shardBits;
+
+    public ColumnarBookingStore() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    public ColumnarBookingStore(int minimumShards) {
+        int shardCount = Integer.highestOneBit(Math.max(1, minimumShards - 1)) << 1;
+        this.shardBits = Integer.numberOfTrailingZeros(shardCount);
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    @Override
+    public void put(String bookingId, BookingRequest bookingRequest) {
+        long numericId = SnowflakeIdGenerator.parseCanonical(bookingId);
+        int user = userIds.encode(bookingRequest.getUserId());
+        int room = roomIds.encode(bookingRequest.getRoomId());
+        shardFor(bookingId, numericId).put(bookingId, numericId, user, room, bookingRequest);
+    }
+
+    @Override
+    public void putAll(Map<String, BookingRequest> bookings) {
+        bookings.forEach(this::put);
+    }
+
+    @Override
+    public BookingRequest get(String bookingId) {
+        long numericId = SnowflakeIdGenerator.parseCanonical(bookingId);
+        return shardFor(bookingId, numericId).get(bookingId, numericId);
+    }
+
+    @Override
+    public void remove(String bookingId) {
+        long numericId = SnowflakeIdGenerator.parseCanonical(bookingId);
+        shardFor(bookingId, numericId).remove(bookingId, numericId, ANY_VERSION);
+    }
+
+    @Override
+    public VersionedBooking getVersioned(String bookingId) {
+        long numericId = SnowflakeIdGenerator.parseCanonical(bookingId);
+        return shardFor(bookingId, numericId).getVersioned(bookingId, numericId);
+    }
+
+    @Override
+    public boolean replace(String bookingId, long expectedVersion, BookingRequest bookingRequest) {
+        long numericId = SnowflakeIdGenerator.parseCanonical(bookingId);
+        int user = userIds.encode(bookingRequest.getUserId());
+        int room = roomIds.encode(bookingRequest.getRoomId());
+        return shardFor(bookingId, numericId).replace(bookingId, numericId, expectedVersion, user, room, bookingRequest);
+    }
+
+    @Override
+    public boolean remove(String bookingId, long expectedVersion) {
+        long numericId = SnowflakeIdGenerator.parseCanonical(bookingId);
+        return shardFor(bookingId, numericId).remove(bookingId, numericId, expectedVersion);
+    }
+
+    @Override
+    public void restore(String bookingId, BookingRequest bookingRequest, long version) {
+        long numericId = SnowflakeIdGenerator.parseCanonical(bookingId);
+        int user = userIds.encode(bookingRequest.getUserId());
+        int room = roomIds.encode(bookingRequest.getRoomId());
+        shardFor(bookingId, numericId).restore(bookingId, numericId, user, room, bookingRequest, version);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    // each shard is copied out under its lock and visited outside it
+    @Override
+    public void forEach(BiConsumer<String, BookingRequest> action) {
+        for (Shard shard : shards) {
+            List<String> ids = new ArrayList<>();
+            List<BookingRequest> bookings = new ArrayList<>();
+            shard.collect(ids, bookings);
+            for (int i = 0; i < ids.size(); i++) {
+                action.accept(ids.get(i), bookings.get(i));
+            }
+        }
+    }
+
+    int getUserCount() {
+        return userIds.size();
+    }
+
+    private Shard shardFor(String bookingId, long numericId) {
+        if (shardBits == 0) {
+            return shards[0];
+        }
+        return numericId != 0
+                ? shards[(int) ((numericId * 0x9E3779B97F4A7C15L) >>> (64 - shardBits))]
+                : shards[(bookingId.hashCode() * 0x9E3779B9) >>> (32 - shardBits)];
+    }
+
+    private class Shard {
+
+        // slots of snowflake ids by number; anything else, e.g. UUIDs, by string
+        private final LongIntHashMap slotsByNumericId = new LongIntHashMap();
+        private final Map<String, Integer> slotsByOtherId = new HashMap<>();
+        private final Map<Integer, String> otherIdsBySlot = new HashMap<>();
+
+        private long[] numericIds = new long[16];
+        private int[] users = new int[16];
+        private int[] rooms = new int[16];
+        private int[] datesFrom = new int[16];
+        private int[] datesTo = new int[16];
+        private int[] guestCounts = new int[16];
+        private long[] versions = new long[16];
+        private long[] requestKeys = new long[16];
+        private byte[] flags = new byte[16];
+
+        private int[] freeSlots = new int[16];
+        private int freeCount;
+        private int highWater;
+
+        synchronized void put(String bookingId, long numericId, int user, int room, BookingRequest bookingRequest) {
+            int slot = slotOf(bookingId, numericId);
+            if (slot == LongIntHashMap.MISSING) {
+                slot = allocate();
+                if (numericId != 0) {
+                    slotsByNumericId.put(numericId, slot);
+                } else {
+                    slotsByOtherId.put(bookingId, slot);
+                    otherIdsBySlot.put(slot, bookingId);
+                }
+                versions[slot] = 0;
+            }
+            write(slot, numericId, user, room, bookingRequest);
+        }
+
+        synchronized void restore(String bookingId, long numericId, int user, int room, BookingRequest bookingRequest,
+                                  long version) {
+            put(bookingId, numericId, user, room, bookingRequest);
+            versions[slotOf(bookingId, numericId)] = version;
+        }
+
+        // the shard lock makes the version check and the write one step
+        synchronized boolean replace(String bookingId, long numericId, long expectedVersion, int user, int room,
+                                     BookingRequest bookingRequest) {
+            int slot = slotOf(bookingId, numericId);
+            if (slot == LongIntHashMap.MISSING || versions[slot] != expectedVersion) {
+                return false;
+            }
+            write(slot, numericId, user, room, bookingRequest);
+            return true;
+        }
+
+        synchronized VersionedBooking getVersioned(String bookingId, long numericId) {
+            int slot = slotOf(bookingId, numericId);
+            return slot == LongIntHashMap.MISSING ? null : new VersionedBooking(materialise(slot), versions[slot]);
+        }
+
+        private void write(int slot, long numericId, int user, int room, BookingRequest bookingRequest) {
+            versions[slot]++;
+            numericIds[slot] = numericId;
+            users[slot] = user;
+            rooms[slot] = room;
+            datesFrom[slot] = epochDay(bookingRequest.getDateFrom());
+            datesTo[slot] = epochDay(bookingRequest.getDateTo());
+            guestCounts[slot] = bookingRequest.getGuestCount();
+            requestKeys[slot] = bookingRequest.getRequestKey();
+            flags[slot] = (byte) (OCCUPIED | (bookingRequest.isPrepaid() ? PREPAID : 0));
+        }
+
+        synchronized BookingRequest get(String bookingId, long numericId) {
+            int slot = slotOf(bookingId, numericId);
+            return slot == LongIntHashMap.MISSING ? null : materialise(slot);
+        }
+
+        synchronized boolean remove(String bookingId, long numericId, long expectedVersion) {
+            if (expectedVersion != ANY_VERSION) {
+                int slot = slotOf(bookingId, numericId);
+                if (slot == LongIntHashMap.MISSING || versions[slot] != expectedVersion) {
+                    return false;
+                }
+            }
+            int slot;
+            if (numericId != 0) {
+                slot = slotsByNumericId.remove(numericId);
+            } else {
+                Integer otherSlot = slotsByOtherId.remove(bookingId);
+                slot = otherSlot == null ? LongIntHashMap.MISSING : otherSlot;
+                otherIdsBySlot.remove(slot);
+            }
+            if (slot != LongIntHashMap.MISSING) {
+                flags[slot] = 0;
+                if (freeCount == freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+                }
+                freeSlots[freeCount++] = slot;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized int size() {
+            return slotsByNumericId.size() + slotsByOtherId.size();
+        }
+
+        synchronized void collect(List<String> ids, List<BookingRequest> bookings) {
+            for (int slot = 0; slot < highWater; slot++) {
+                if ((flags[slot] & OCCUPIED) != 0) {
+                    long numericId = numericIds[slot];
+                    ids.add(numericId != 0 ? SnowflakeIdGenerator.format(numericId) : otherIdsBySlot.get(slot));
+                    bookings.add(materialise(slot));
+                }
+            }
+        }
+
+        private int slotOf(String bookingId, long numericId) {
+            if (numericId != 0) {
+                return slotsByNumericId.get(numericId);
+            }
+            Integer slot = slotsByOtherId.get(bookingId);
+            return slot == null ? LongIntHashMap.MISSING : slot;
+        }
+
+        private BookingRequest materialise(int slot) {
+            return new BookingRequest(userIds.decode(users[slot]), date(datesFrom[slot]), date(datesTo[slot]),
+                    guestCounts[slot], (flags[slot] & PREPAID) != 0, roomIds.decode(rooms[slot]), requestKeys[slot]);
+        }
+
+        private int allocate() {
+            if (freeCount > 0) {
+                return freeSlots[--freeCount];
+            }
+            if (highWater == flags.length) {
+                int capacity = highWater * 2;
+                numericIds = Arrays.copyOf(numericIds, capacity);
+                users = Arrays.copyOf(users, capacity);
+                rooms = Arrays.copyOf(rooms, capacity);
+                datesFrom = Arrays.copyOf(datesFrom, capacity);
+                datesTo = Arrays.copyOf(datesTo, capacity);
+                guestCounts = Arrays.copyOf(guestCounts, capacity);
+                versions = Arrays.copyOf(versions, capacity);
+                requestKeys = Arrays.copyOf(requestKeys, capacity);
+                flags = Arrays.copyOf(flags, capacity);
+            }
+            return highWater++;
+        }
+
+    }
+
+    private static int epochDay(LocalDate date) {
+        return date == null ? NO_DATE : Math.toIntExact(date.toEpochDay());
+    }
+
+    private static LocalDate date(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+}
@@ -0,0 +1,250 @@
+package com.mockito.learning.happyhotel.booking;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Booking confirmations waiting to be mailed. Enqueueing only logs the id and hands it to a bounded queue;
+// worker threads drain the queue in batches and retry failed batches with exponential backoff.
+// With the journal enabled, ids survive a crash until their delivery is logged. Ids that can't be queued in time,
+// or whose batch runs out of attempts, become dead letters: kept, journaled and counted instead of dropped.
+@Component
+public class ConfirmationOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(ConfirmationOutbox.class);
+
+    static final byte ENQUEUED = 1;
+    static final byte DELIVERED = 2;
+    static final byte DEAD_LETTER = 3;
+
+    private final MailTransport transport;
+    private final BlockingQueue<String> queue;
+    private final int capacity;
+    private final long offerTimeoutMillis;
+    private final int workers;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Journal journal;
+    private final List<String> recovered = new ArrayList<>();
+    private final Set<String> deadLetters = ConcurrentHashMap.newKeySet();
+    private ExecutorService executor;
+
+    @Autowired
+    public ConfirmationOutbox(MailTransport transport, JournalSettings journalSettings,
+                              @Value("${happyhotel.mail.outbox.capacity:10000}") int capacity,
+                              @Value("${happyhotel.mail.outbox.offer-timeout-ms:100}") long offerTimeoutMillis,
+                              @Value("${happyhotel.mail.outbox.workers:2}") int workers,
+                              @Value("${happyhotel.mail.outbox.batch-size:100}") int batchSize,
+                              @Value("${happyhotel.mail.outbox.max-attempts:10}") int maxAttempts,
+                              @Value("${happyhotel.mail.outbox.initial-backoff-ms:100}") long initialBackoffMillis,
+                              @Value("${happyhotel.mail.outbox.max-backoff-ms:30000}") long maxBackoffMillis) {
+        this.transport = transport;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.journal = journalSettings.isEnabled() ? recover(journalSettings) : null;
+    }
+
+    public void enqueue(String bookingId) {
+        if (journal != null) {
+            journal.append(ENQUEUED, BookingRecordCodec.encodeId(bookingId));
+        }
+        offer(List.of(bookingId));
+    }
+
+    public void enqueueAll(List<String> bookingIds) {
+        if (journal != null) {
+            List<byte[]> records = new ArrayList<>(bookingIds.size());
+            bookingIds.forEach(bookingId -> records.add(BookingRecordCodec.encodeId(bookingId)));
+            journal.appendAll(ENQUEUED, records);
+        }
+        offer(bookingIds);
+    }
+
+    // lets callers turn work away before they commit to confirmations the outbox has no room for
+    public void checkCapacity(int confirmations) {
+        if (queue.remainingCapacity() < Math.min(confirmations, capacity)) {
+            throw new RejectedExecutionException("Confirmation outbox is full");
+        }
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    public Set<String> getDeadLetters() {
+        return Set.copyOf(deadLetters);
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "confirmation-outbox-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::drain);
+        }
+        // whatever doesn't fit stays in the journal and is picked up again on the next start
+        recovered.forEach(queue::offer);
+        recovered.clear();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private void drain() {
+        List<String> batch = new ArrayList<>(batchSize);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                deliver(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // shutting down; anything undelivered is still in the journal
+        }
+    }
+
+    // a full queue pushes back on the callers for a bounded time, then rejects, which the web tier answers with a 503
+    private void offer(List<String> bookingIds) {
+        for (int i = 0; i < bookingIds.size(); i++) {
+            boolean queued;
+            try {
+                queued = queue.offer(bookingIds.get(i), offerTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+            if (!queued) {
+                List<String> rejected = bookingIds.subList(i, bookingIds.size());
+                deadLetter(rejected);
+                throw new RejectedExecutionException("Confirmation outbox is full, rejected " + rejected);
+            }
+        }
+    }
+
+    private void deliver(List<String> batch) throws InterruptedException {
+        long backoffMillis = initialBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transport.sendBookingConfirmations(batch);
+                break;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts) {
+                    log.error("Giving up on confirmations for {} after {} attempts", batch, attempt, e);
+                    deadLetter(batch);
+                    return;
+                }
+                log.warn("Sending confirmations failed (attempt {}), retrying in {} ms", attempt, backoffMillis, e);
+                TimeUnit.MILLISECONDS.sleep(backoffMillis);
+                backoffMillis = Math.min(backoffMillis * 2, maxBackoffMillis);
+            }
+        }
+        if (journal != null) {
+            List<byte[]> records = new ArrayList<>(batch.size());
+            batch.forEach(bookingId -> records.add(BookingRecordCodec.encodeId(bookingId)));
+            journal.appendAll(DELIVERED, records);
+        }
+    }
+
+    private void deadLetter(List<String> bookingIds) {
+        deadLetters.addAll(bookingIds);
+        BookingMetrics.DEAD_LETTERS.increment(bookingIds.size());
+        if (journal != null) {
+            List<byte[]> records = new ArrayList<>(bookingIds.size());
+            bookingIds.forEach(bookingId -> records.add(BookingRecordCodec.encodeId(bookingId)));
+            journal.appendAll(DEAD_LETTER, records);
+        }
+    }
+
+    // replays the outbox journal and rewrites it with just the undelivered ids and the dead letters,
+    // so it doesn't grow forever
+    private Journal recover(JournalSettings journalSettings) {
+        Path file = journalSettings.getDirectory().resolve("outbox.journal");
+        Path compacted = journalSettings.getDirectory().resolve("outbox.journal.tmp");
+        Set<String> pending = new LinkedHashSet<>();
+        Journal previous = journalSettings.open(file);
+        previous.replay((type, payload) -> {
+            String bookingId = BookingRecordCodec.decodeId(payload);
+            if (type == ENQUEUED) {
+                pending.add(bookingId);
+            } else if (type == DELIVERED) {
+                pending.remove(bookingId);
+            } else if (type == DEAD_LETTER) {
+                pending.remove(bookingId);
+                deadLetters.add(bookingId);
+            }
+        });
+        previous.close();
+        try {
+            Files.deleteIfExists(compacted);
+            Journal rewritten = journalSettings.open(compacted);
+            rewritten.replay((type, payload) -> {
+            });
+            for (String bookingId : pending) {
+                rewritten.append(ENQUEUED, BookingRecordCodec.encodeId(bookingId));
+            }
+            for (String bookingId : deadLetters) {
+                rewritten.append(DEAD_LETTER, BookingRecordCodec.encodeId(bookingId));
+            }
+            rewritten.close();
+            Files.move(compacted, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        recovered.addAll(pending);
+        Journal journal = journalSettings.open(file);
+        journal.replay((type, payload) -> {
+        });
+        return journal;
+    }
+
+}
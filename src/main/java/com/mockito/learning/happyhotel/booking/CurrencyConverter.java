@@ -1,11 +1,86 @@
 package com.mockito.learning.happyhotel.booking;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Converts with the latest rate snapshot. A background refresher fetches new rates and swaps the snapshot in,
+// so conversions on the request path are a volatile read and a map lookup, never a call to the provider.
+@Component
 public class CurrencyConverter {
 
-    private static final double USD_TO_EUR_RATE = 0.85;
+    private static final Logger log = LoggerFactory.getLogger(CurrencyConverter.class);
+
+    public static final String EUR = "EUR";
+
+    private final ExchangeRateProvider provider;
+    private final long refreshIntervalMillis;
+    private volatile ExchangeRates rates;
+    private ScheduledExecutorService refresher;
+
+    public CurrencyConverter() {
+        this(new FileExchangeRateProvider(), 0);
+    }
+
+    @Autowired
+    public CurrencyConverter(ExchangeRateProvider provider,
+                             @Value("${happyhotel.rates.refresh-interval-ms:60000}") long refreshIntervalMillis) {
+        this.provider = provider;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.rates = provider.fetchRates();
+    }
+
+    public double toEuro(double dollarAmount) {
+        return rates.convert(dollarAmount, EUR);
+    }
+
+    public double convert(double dollarAmount, String currency) {
+        return rates.convert(dollarAmount, currency);
+    }
+
+    public ExchangeRates getRates() {
+        return rates;
+    }
+
+    // keeps serving the previous snapshot when the provider fails, and when it returns the same rates again: quotes
+    // are cached per snapshot, so swapping in an equal one would only throw the cached quotes away
+    public void refresh() {
+        try {
+            ExchangeRates fetched = provider.fetchRates();
+            if (!fetched.hasSameRates(rates)) {
+                rates = fetched;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Exchange rate refresh failed, keeping rates as of {}", rates.getAsOf(), e);
+        }
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (refresher == null && refreshIntervalMillis > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "exchange-rate-refresher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refresh, refreshIntervalMillis, refreshIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
 
-    public static double toEuro(double dollarAmount) {
-        return dollarAmount * USD_TO_EUR_RATE;
+    @PreDestroy
+    public synchronized void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
     }
 
 }
@@ -0,0 +1,7 @@
+package com.mockito.learning.happyhotel.booking;
+
+public interface ExchangeRateProvider {
+
+    ExchangeRates fetchRates();
+
+}
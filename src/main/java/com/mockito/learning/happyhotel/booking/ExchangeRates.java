@@ -0,0 +1,44 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Immutable snapshot of exchange rates, quoted as units of each currency per US dollar.
+// A snapshot is replaced as a whole, so a quote converting into several currencies reads one consistent set of rates.
+public class ExchangeRates {
+
+    public static final String USD = "USD";
+
+    private final Map<String, Double> ratesPerUsd;
+    private final Instant asOf;
+
+    public ExchangeRates(Map<String, Double> ratesPerUsd, Instant asOf) {
+        Map<String, Double> rates = new HashMap<>(ratesPerUsd);
+        rates.put(USD, 1.0);
+        this.ratesPerUsd = Map.copyOf(rates);
+        this.asOf = asOf;
+    }
+
+    public double convert(double dollarAmount, String currency) {
+        Double rate = ratesPerUsd.get(currency);
+        if (rate == null) {
+            throw new IllegalArgumentException("Unsupported currency: " + currency);
+        }
+        return dollarAmount * rate;
+    }
+
+    public Set<String> getCurrencies() {
+        return ratesPerUsd.keySet();
+    }
+
+    public Instant getAsOf() {
+        return asOf;
+    }
+
+    boolean hasSameRates(ExchangeRates other) {
+        return ratesPerUsd.equals(other.ratesPerUsd);
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+// Local stand-in for a rate feed: reads CURRENCY=rate lines from a file, or from the bundled
+// exchange-rates.properties when no file is configured. The file is re-read on every fetch.
+@Component
+public class FileExchangeRateProvider implements ExchangeRateProvider {
+
+    private static final String DEFAULT_RATES = "/exchange-rates.properties";
+
+    private final Path file;
+
+    public FileExchangeRateProvider() {
+        this("");
+    }
+
+    @Autowired
+    public FileExchangeRateProvider(@Value("${happyhotel.rates.file:}") String file) {
+        this.file = file.isEmpty() ? null : Path.of(file);
+    }
+
+    @Override
+    public ExchangeRates fetchRates() {
+        Properties properties = new Properties();
+        try (InputStream in = file != null
+                ? Files.newInputStream(file)
+                : FileExchangeRateProvider.class.getResourceAsStream(DEFAULT_RATES)) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Map<String, Double> rates = new HashMap<>();
+        properties.forEach((currency, rate) -> rates.put(currency.toString().trim(),
+                Double.parseDouble(rate.toString().trim())));
+        return new ExchangeRates(rates, Instant.now());
+    }
+
+}
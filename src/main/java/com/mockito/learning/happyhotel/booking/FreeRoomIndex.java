@@ -0,0 +1,130 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Search index over the room calendars: per night one bit per booked room, plus one bit per 64 rooms that is
+// only set while that word of rooms is full, so a lookup skips fully booked blocks 4096 rooms at a time.
+// The bits are a hint, the calendars stay the source of truth: a room may briefly show as free when it isn't
+// (the caller re-checks its calendar), but never as booked when it is free.
+class FreeRoomIndex {
+
+    private final int roomCount;
+    private final int wordCount;
+    // words of booked bits followed by the summary words of full-word bits; created on first booking
+    private final AtomicReferenceArray<AtomicLongArray> nights =
+            new AtomicReferenceArray<>(AvailabilityCalendar.MAX_EPOCH_DAY);
+
+    FreeRoomIndex(int roomCount) {
+        this.roomCount = roomCount;
+        this.wordCount = (roomCount + 63) >>> 6;
+    }
+
+    // first room in [fromRoom, toRoom) not marked booked on any night in [from, to), or -1;
+    // every night moves the candidate up to its own next free room until all nights agree on one
+    int nextFreeRoom(int fromRoom, int toRoom, long from, long to) {
+        if (fromRoom >= toRoom) {
+            return -1;
+        }
+        int candidate = fromRoom;
+        long agreeing = 0;
+        long night = from;
+        while (agreeing < to - from) {
+            int free = nextFreeRoom(nights.get((int) night), candidate, toRoom);
+            if (free < 0) {
+                return -1;
+            }
+            agreeing = free == candidate ? agreeing + 1 : 1;
+            candidate = free;
+            night = night + 1 == to ? from : night + 1;
+        }
+        return candidate;
+    }
+
+    void markBooked(int room, long from, long to) {
+        int word = room >>> 6;
+        long bit = 1L << room;
+        for (long night = from; night < to; night++) {
+            AtomicLongArray bits = bitsFor(night);
+            long booked = bits.getAndUpdate(word, current -> current | bit) | bit;
+            if (isFull(word, booked)) {
+                setBit(bits, wordCount + (word >>> 6), 1L << word);
+                // a release between the two updates would have cleared the summary bit first; take it back
+                if (!isFull(word, bits.get(word))) {
+                    clearBit(bits, wordCount + (word >>> 6), 1L << word);
+                }
+            }
+        }
+    }
+
+    void markFree(int room, long night) {
+        AtomicLongArray bits = nights.get((int) night);
+        if (bits != null) {
+            int word = room >>> 6;
+            clearBit(bits, word, 1L << room);
+            clearBit(bits, wordCount + (word >>> 6), 1L << word);
+        }
+    }
+
+    private int nextFreeRoom(AtomicLongArray bits, int fromRoom, int toRoom) {
+        if (bits == null) {
+            return fromRoom;
+        }
+        int word = fromRoom >>> 6;
+        long free = ~bits.get(word) & (-1L << fromRoom);
+        while (free == 0) {
+            word = nextNonFullWord(bits, word + 1);
+            if (word < 0 || word << 6 >= toRoom) {
+                return -1;
+            }
+            free = ~bits.get(word);
+        }
+        int room = (word << 6) + Long.numberOfTrailingZeros(free);
+        return room < toRoom ? room : -1;
+    }
+
+    private int nextNonFullWord(AtomicLongArray bits, int fromWord) {
+        if (fromWord >= wordCount) {
+            return -1;
+        }
+        int summary = fromWord >>> 6;
+        long notFull = ~bits.get(wordCount + summary) & (-1L << fromWord);
+        while (notFull == 0) {
+            if (++summary << 6 >= wordCount) {
+                return -1;
+            }
+            notFull = ~bits.get(wordCount + summary);
+        }
+        int word = (summary << 6) + Long.numberOfTrailingZeros(notFull);
+        return word < wordCount ? word : -1;
+    }
+
+    private boolean isFull(int word, long booked) {
+        // rooms past the end of the last word never exist, so they count as booked
+        int roomsInWord = Math.min(64, roomCount - (word << 6));
+        long existing = roomsInWord == 64 ? -1L : (1L << roomsInWord) - 1;
+        return (booked & existing) == existing;
+    }
+
+    private AtomicLongArray bitsFor(long night) {
+        AtomicLongArray bits = nights.get((int) night);
+        if (bits == null) {
+            nights.compareAndSet((int) night, null, new AtomicLongArray(wordCount + ((wordCount + 63) >>> 6)));
+            bits = nights.get((int) night);
+        }
+        return bits;
+    }
+
+    private static void setBit(AtomicLongArray bits, int index, long bit) {
+        if ((bits.get(index) & bit) == 0) {
+            bits.getAndUpdate(index, current -> current | bit);
+        }
+    }
+
+    private static void clearBit(AtomicLongArray bits, int index, long bit) {
+        if ((bits.get(index) & bit) != 0) {
+            bits.getAndUpdate(index, current -> current & ~bit);
+        }
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.mockito.learning.happyhotel.booking;
+
+public enum FsyncPolicy {
+
+    // force every record to disk before the write returns
+    PER_WRITE,
+    // writers wait for a force that covers their record; one force serves every writer queued behind it
+    GROUP_COMMIT,
+    // a background thread forces the journal at a fixed interval; a crash can lose the last interval
+    PERIODIC
+
+}
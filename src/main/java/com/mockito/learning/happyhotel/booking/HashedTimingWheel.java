@@ -0,0 +1,186 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Expires timeouts in O(1): a ring of buckets, one per tick, swept by a single worker thread. Scheduling and
+// cancelling only hand the timeout to the worker through a queue, so there is no lock and no task per timeout.
+// A timeout more than one turn of the wheel away waits in its bucket for the remaining rounds.
+// The worker starts with the first timeout. Expiry is accurate to one tick.
+final class HashedTimingWheel<T extends HashedTimingWheel.Timeout> {
+
+    private static final Logger log = LoggerFactory.getLogger(HashedTimingWheel.class);
+
+    // bounds the work of one tick when timeouts are scheduled faster than they can be sorted into buckets
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final String name;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Consumer<T> onExpiry;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final long startNanos = System.nanoTime();
+    private volatile Thread worker;
+    private volatile boolean stopped;
+
+    HashedTimingWheel(String name, long tickMillis, int ticksPerWheel, Consumer<T> onExpiry) {
+        int size = Integer.highestOneBit(Math.max(1, ticksPerWheel - 1)) << 1;
+        this.name = name;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        this.wheel = new Bucket[size];
+        this.mask = size - 1;
+        this.onExpiry = onExpiry;
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+    }
+
+    void schedule(T timeout, long delayMillis) {
+        Timeout entry = timeout;
+        entry.deadlineNanos = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        scheduled.add(entry);
+        if (worker == null) {
+            start();
+        }
+    }
+
+    // the timeout is dropped from its bucket on the next tick; one the worker is expiring right now may still expire
+    void cancel(T timeout) {
+        Timeout entry = timeout;
+        entry.cancelled = true;
+        cancelled.add(entry);
+    }
+
+    synchronized void stop() {
+        stopped = true;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private synchronized void start() {
+        if (worker == null && !stopped) {
+            Thread thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+            thread.start();
+            worker = thread;
+        }
+    }
+
+    private void run() {
+        long tick = 0;
+        while (!stopped) {
+            long sleepNanos = (tick + 1) * tickNanos - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                continue;
+            }
+            removeCancelled();
+            transferScheduled(tick);
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void removeCancelled() {
+        for (Timeout timeout = cancelled.poll(); timeout != null; timeout = cancelled.poll()) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferScheduled(long tick) {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = scheduled.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.cancelled) {
+                continue;
+            }
+            long deadlineTick = timeout.deadlineNanos / tickNanos;
+            timeout.remainingRounds = (deadlineTick - tick) / wheel.length;
+            // a deadline already passed goes into the bucket being expired now
+            wheel[(int) (Math.max(deadlineTick, tick) & mask)].add(timeout);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expire(Bucket bucket) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.cancelled) {
+                bucket.remove(timeout);
+            } else if (timeout.remainingRounds <= 0) {
+                bucket.remove(timeout);
+                try {
+                    onExpiry.accept((T) timeout);
+                } catch (RuntimeException e) {
+                    log.error("Expiring a timeout on {} failed", name, e);
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    // Base class of anything the wheel expires; the bucket links live in the timeout itself, so a scheduled timeout
+    // costs no allocation beyond its queue node.
+    static class Timeout {
+
+        private long deadlineNanos;
+        private long remainingRounds;
+        private Timeout prev;
+        private Timeout next;
+        private Bucket bucket;
+        private volatile boolean cancelled;
+
+    }
+
+    // doubly linked list of the timeouts due on one tick of the wheel, only touched by the worker
+    private static class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+    }
+
+}
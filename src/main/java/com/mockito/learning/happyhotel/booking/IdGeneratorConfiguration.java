@@ -0,0 +1,16 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IdGeneratorConfiguration {
+
+    @Bean
+    public IdGenerator idGenerator(@Value("${happyhotel.ids.generator:snowflake}") String generator,
+                                   @Value("${happyhotel.ids.node:0}") long node) {
+        return "uuid".equalsIgnoreCase(generator) ? new UuidIdGenerator() : new SnowflakeIdGenerator(node);
+    }
+
+}
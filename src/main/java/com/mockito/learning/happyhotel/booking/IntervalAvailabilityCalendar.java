@@ -0,0 +1,113 @@
+package com.mockito.learning.happyhotel.booking;
+
+class IntervalAvailabilityCalendar implements AvailabilityCalendar {
+
+    private final RoomCalendar[] calendars;
+    private final FreeRoomIndex freeRooms;
+
+    IntervalAvailabilityCalendar(int roomCount) {
+        calendars = new RoomCalendar[roomCount];
+        freeRooms = new FreeRoomIndex(roomCount);
+        for (int room = 0; room < roomCount; room++) {
+            calendars[room] = new RoomCalendar();
+        }
+    }
+
+    @Override
+    public boolean isFree(int room, long from, long to) {
+        return calendars[room].isFree(from, to);
+    }
+
+    @Override
+    public int nextFreeRoom(int fromRoom, int toRoom, long from, long to) {
+        if (!isIndexed(from, to)) {
+            for (int room = fromRoom; room < toRoom; room++) {
+                if (calendars[room].isFree(from, to)) {
+                    return room;
+                }
+            }
+            return -1;
+        }
+        // the index may still show a room as free that was booked a moment ago, so its answer is only a candidate
+        for (int room = freeRooms.nextFreeRoom(fromRoom, toRoom, from, to); room >= 0;
+             room = freeRooms.nextFreeRoom(room + 1, toRoom, from, to)) {
+            if (calendars[room].isFree(from, to)) {
+                return room;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean book(int room, long from, long to) {
+        if (!calendars[room].book(from, to)) {
+            return false;
+        }
+        if (isIndexed(from, to)) {
+            freeRooms.markBooked(room, from, to);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean release(int room, long from, long to) {
+        if (!calendars[room].release(from, to)) {
+            return false;
+        }
+        if (isIndexed(from, to)) {
+            for (long night = from; night < to; night++) {
+                markFree(room, night);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Stay releaseCovering(int room, long from, long to) {
+        Stay stay = from < to ? calendars[room].releaseCovering(from, to) : null;
+        if (stay != null && isIndexed(stay.from(), stay.to())) {
+            for (long night = stay.from(); night < stay.to(); night++) {
+                markFree(room, night);
+            }
+        }
+        return stay;
+    }
+
+    @Override
+    public boolean move(int room, long from, long to, long newFrom, long newTo) {
+        if (newFrom >= newTo || !calendars[room].move(from, to, newFrom, newTo)) {
+            return false;
+        }
+        if (isIndexed(newFrom, newTo)) {
+            freeRooms.markBooked(room, newFrom, newTo);
+            // unlike a new booking, a moved stay is known to others: one may have released it before we marked it
+            for (long night = newFrom; night < newTo; night++) {
+                if (calendars[room].isFree(night, night + 1)) {
+                    markFree(room, night);
+                }
+            }
+        }
+        if (isIndexed(from, to)) {
+            for (long night = from; night < to; night++) {
+                if (night < newFrom || night >= newTo) {
+                    markFree(room, night);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void markFree(int room, long night) {
+        freeRooms.markFree(room, night);
+        // a booking of the night may have marked the room between our release and clearing the bit
+        if (!calendars[room].isFree(night, night + 1)) {
+            freeRooms.markBooked(room, night, night + 1);
+        }
+    }
+
+    // the index covers the same epoch days as the bitmap calendar; stays outside them fall back to a scan
+    private static boolean isIndexed(long from, long to) {
+        return from >= 0 && to <= MAX_EPOCH_DAY;
+    }
+
+}
@@ -0,0 +1,265 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+// Append-only log of typed binary records, written through fixed-size memory-mapped regions of one file.
+// Record layout: payload length (int), CRC32 of type and payload (int), type (byte), payload.
+// A zero length marks the end of the log, END_OF_REGION sends the reader on to the next region.
+// Locks are ReentrantLocks rather than monitors: a virtual thread waiting on one, or forcing under one, unmounts
+// instead of pinning its carrier thread.
+public class Journal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(Journal.class);
+
+    static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+
+    private static final int HEADER_SIZE = 9;
+    private static final int END_OF_REGION = -1;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final FsyncPolicy fsyncPolicy;
+    private final int regionSize;
+    private final ScheduledExecutorService flusher;
+    private final CRC32 crc = new CRC32();
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long writtenPosition;
+
+    private final ReentrantLock forceLock = new ReentrantLock();
+    private volatile long durablePosition;
+
+    public Journal(Path file, FsyncPolicy fsyncPolicy, long flushIntervalMillis) {
+        this(file, fsyncPolicy, flushIntervalMillis, DEFAULT_REGION_SIZE);
+    }
+
+    Journal(Path file, FsyncPolicy fsyncPolicy, long flushIntervalMillis, int regionSize) {
+        this.file = file;
+        this.fsyncPolicy = fsyncPolicy;
+        this.regionSize = regionSize;
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (fsyncPolicy == FsyncPolicy.PERIODIC) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-flusher-" + file.getFileName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    // feeds every intact record to the handler in write order and positions the journal after the last one;
+    // must be called once, before the first append
+    public void replay(RecordHandler handler) {
+        writeLock.lock();
+        try {
+            replayRegions(handler);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void replayRegions(RecordHandler handler) {
+        long start = 0;
+        while (true) {
+            MappedByteBuffer mapped = map(start);
+            int position = 0;
+            while (position + HEADER_SIZE <= regionSize) {
+                int length = mapped.getInt(position);
+                if (length == END_OF_REGION) {
+                    break;
+                }
+                if (length <= 0 || position + HEADER_SIZE + length > regionSize
+                        || mapped.getInt(position + 4) != checksum(mapped, position + 8, length + 1)) {
+                    // end of log, or a record torn by a crash: everything after it is discarded
+                    region = mapped;
+                    regionStart = start;
+                    writtenPosition = start + position;
+                    durablePosition = writtenPosition;
+                    mapped.put(position, new byte[Math.min(HEADER_SIZE, regionSize - position)]);
+                    mapped.position(position);
+                    return;
+                }
+                ByteBuffer payload = mapped.slice(position + HEADER_SIZE, length).asReadOnlyBuffer();
+                handler.onRecord(mapped.get(position + 8), payload);
+                position += HEADER_SIZE + length;
+            }
+            start += regionSize;
+        }
+    }
+
+    public void append(byte type, byte[] payload) {
+        appendAll(type, List.of(payload));
+    }
+
+    // writes the records back to back and makes them durable with a single force
+    public void appendAll(byte type, List<byte[]> payloads) {
+        for (byte[] payload : payloads) {
+            // a zero length is the end-of-log marker, replay would stop there and drop every later record
+            if (payload.length == 0) {
+                throw new IllegalArgumentException("Journal records must not be empty");
+            }
+            if (payload.length + HEADER_SIZE > regionSize) {
+                throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit a journal region");
+            }
+        }
+        long end;
+        writeLock.lock();
+        try {
+            if (region == null) {
+                throw new IllegalStateException("Journal must be replayed before it is appended to");
+            }
+            MappedByteBuffer firstRegion = region;
+            int firstPosition = region.position();
+            for (byte[] payload : payloads) {
+                write(type, payload);
+            }
+            end = writtenPosition;
+            if (fsyncPolicy == FsyncPolicy.PER_WRITE) {
+                // regions left behind were forced when the batch moved past them
+                int from = region == firstRegion ? firstPosition : 0;
+                region.force(from, region.position() - from);
+                durablePosition = end;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (fsyncPolicy == FsyncPolicy.GROUP_COMMIT) {
+            awaitDurable(end);
+        }
+    }
+
+    // an exception escaping a scheduled task cancels every later run, so a failed force is logged and counted instead
+    private void flush() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            log.error("Flushing journal {} failed", file, e);
+            BookingMetrics.JOURNAL_FLUSH_FAILURES.increment();
+        }
+    }
+
+    public void sync() {
+        MappedByteBuffer current;
+        long target;
+        writeLock.lock();
+        try {
+            if (region == null) {
+                return;
+            }
+            current = region;
+            target = writtenPosition;
+        } finally {
+            writeLock.unlock();
+        }
+        forceLock.lock();
+        try {
+            if (durablePosition < target) {
+                current.force();
+                durablePosition = target;
+            }
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        sync();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void awaitDurable(long position) {
+        if (durablePosition >= position) {
+            return;
+        }
+        // whoever gets the lock first forces everything written so far, covering the writers queued behind it
+        sync();
+    }
+
+    private void write(byte type, byte[] payload) {
+        if (region.remaining() < HEADER_SIZE + payload.length) {
+            nextRegion();
+        }
+        int position = region.position();
+        region.putInt(payload.length);
+        region.putInt(0);
+        region.put(type);
+        region.put(payload);
+        region.putInt(position + 4, checksum(region, position + 8, payload.length + 1));
+        writtenPosition = regionStart + region.position();
+    }
+
+    private void nextRegion() {
+        if (region.remaining() >= 4) {
+            region.putInt(END_OF_REGION);
+        }
+        region.force();
+        regionStart += regionSize;
+        region = map(regionStart);
+        writtenPosition = regionStart;
+    }
+
+    private MappedByteBuffer map(long start) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_WRITE, start, regionSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // only called while holding writeLock, which guards the shared CRC32
+    private int checksum(ByteBuffer buffer, int offset, int length) {
+        crc.reset();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    @FunctionalInterface
+    public interface RecordHandler {
+
+        void onRecord(byte type, ByteBuffer payload);
+
+    }
+
+}
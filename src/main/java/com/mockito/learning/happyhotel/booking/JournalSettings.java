@@ -0,0 +1,49 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+@Component
+public class JournalSettings {
+
+    private final boolean enabled;
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long flushIntervalMillis;
+    private final long snapshotIntervalMillis;
+
+    public JournalSettings(@Value("${happyhotel.journal.enabled:false}") boolean enabled,
+                           @Value("${happyhotel.journal.dir:data}") Path directory,
+                           @Value("${happyhotel.journal.fsync:group_commit}") FsyncPolicy fsyncPolicy,
+                           @Value("${happyhotel.journal.flush-interval-ms:100}") long flushIntervalMillis,
+                           @Value("${happyhotel.journal.snapshot-interval-ms:60000}") long snapshotIntervalMillis) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getSnapshotIntervalMillis() {
+        return snapshotIntervalMillis;
+    }
+
+    public Journal open(String name) {
+        return open(directory.resolve(name + ".journal"));
+    }
+
+    public Journal open(Path file) {
+        return new Journal(file, fsyncPolicy, flushIntervalMillis);
+    }
+
+}
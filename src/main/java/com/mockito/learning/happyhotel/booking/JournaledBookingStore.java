@@ -0,0 +1,427 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Applies every change to the in-memory delegate, where the version check is a CAS, and then logs it to a journal
+// segment with the version it made. Writers of one booking never wait for each other, so their records may reach
+// the log out of order; replay keeps the highest version of each booking and lets a delete outrank every version
+// up to the one it deleted. A failed append takes the change back out of the delegate before the caller sees it.
+// A snapshot rolls writers over to a new segment, dumps the delegate while they keep going, and then
+// deletes the older segments. Replaying the new segment over the dump is exact, since saves and deletes
+// are idempotent, so startup loads the newest snapshot and replays only the segments written since.
+public class JournaledBookingStore implements BookingStore, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(JournaledBookingStore.class);
+
+    static final byte SAVE = 1;
+    static final byte DELETE = 2;
+
+    private static final String PREFIX = "bookings-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int END_OF_SNAPSHOT = -1;
+
+    private final Path directory;
+    private final Function<Path, Journal> journalFactory;
+    private final BookingStore delegate;
+    // writers share the read lock while they apply and log a change; rolling to a new segment takes the write lock
+    private final ReadWriteLock segmentLock = new ReentrantReadWriteLock();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final LongAdder writesSinceSnapshot = new LongAdder();
+    private ScheduledExecutorService snapshotter;
+    private Journal journal;
+    private long segment;
+
+    public JournaledBookingStore(Path directory, Function<Path, Journal> journalFactory, BookingStore delegate) {
+        this.directory = directory;
+        this.journalFactory = journalFactory;
+        this.delegate = delegate;
+        try {
+            Files.createDirectories(directory);
+            for (Path temp : files(TEMP_SUFFIX)) {
+                Files.delete(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        recover();
+    }
+
+    // logs the booking as the delegate holds it afterwards: a writer that overtook this one logs that version too
+    @Override
+    public void put(String bookingId, BookingRequest bookingRequest) {
+        segmentLock.readLock().lock();
+        try {
+            VersionedBooking previous = delegate.getVersioned(bookingId);
+            delegate.put(bookingId, bookingRequest);
+            VersionedBooking written = delegate.getVersioned(bookingId);
+            if (written != null) {
+                log(SAVE, BookingRecordCodec.encode(bookingId, written.getBookingRequest(), written.getVersion()),
+                        () -> undo(bookingId, previous, written.getVersion()));
+            }
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    // batches hold new bookings only, which nobody else can be writing yet, so each one lands at version 1
+    @Override
+    public void putAll(Map<String, BookingRequest> bookings) {
+        List<byte[]> records = new ArrayList<>(bookings.size());
+        bookings.forEach((bookingId, bookingRequest) -> records.add(BookingRecordCodec.encode(bookingId, bookingRequest, 1)));
+        segmentLock.readLock().lock();
+        try {
+            delegate.putAll(bookings);
+            try {
+                journal.appendAll(SAVE, records);
+            } catch (RuntimeException e) {
+                bookings.keySet().forEach(bookingId -> delegate.remove(bookingId, 1));
+                throw e;
+            }
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        writesSinceSnapshot.add(bookings.size());
+    }
+
+    @Override
+    public BookingRequest get(String bookingId) {
+        return delegate.get(bookingId);
+    }
+
+    @Override
+    public void remove(String bookingId) {
+        while (true) {
+            VersionedBooking current = delegate.getVersioned(bookingId);
+            if (current == null || remove(bookingId, current.getVersion())) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public VersionedBooking getVersioned(String bookingId) {
+        return delegate.getVersioned(bookingId);
+    }
+
+    // only a write that won the delegate's version check is logged, so replay never applies a losing write
+    @Override
+    public boolean replace(String bookingId, long expectedVersion, BookingRequest bookingRequest) {
+        byte[] record = BookingRecordCodec.encode(bookingId, bookingRequest, expectedVersion + 1);
+        segmentLock.readLock().lock();
+        try {
+            VersionedBooking previous = delegate.getVersioned(bookingId);
+            if (previous == null || previous.getVersion() != expectedVersion
+                    || !delegate.replace(bookingId, expectedVersion, bookingRequest)) {
+                return false;
+            }
+            log(SAVE, record, () -> undo(bookingId, previous, expectedVersion + 1));
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove(String bookingId, long expectedVersion) {
+        byte[] record = BookingRecordCodec.encodeDelete(bookingId, expectedVersion);
+        segmentLock.readLock().lock();
+        try {
+            VersionedBooking previous = delegate.getVersioned(bookingId);
+            if (previous == null || previous.getVersion() != expectedVersion
+                    || !delegate.remove(bookingId, expectedVersion)) {
+                return false;
+            }
+            log(DELETE, record, () -> delegate.restore(bookingId, previous.getBookingRequest(), expectedVersion));
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        return true;
+    }
+
+    // the version is logged with the booking, so a reopened store hands out the same versions as before
+    @Override
+    public void restore(String bookingId, BookingRequest bookingRequest, long version) {
+        byte[] record = BookingRecordCodec.encode(bookingId, bookingRequest, version);
+        segmentLock.readLock().lock();
+        try {
+            VersionedBooking previous = delegate.getVersioned(bookingId);
+            delegate.restore(bookingId, bookingRequest, version);
+            log(SAVE, record, () -> undo(bookingId, previous, version));
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, BookingRequest> action) {
+        delegate.forEach(action);
+    }
+
+    public void scheduleSnapshots(long intervalMillis) {
+        snapshotLock.lock();
+        try {
+            if (snapshotter == null) {
+                snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "booking-snapshotter");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                snapshotter.scheduleWithFixedDelay(this::snapshotIfWritten, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    public void snapshot() {
+        snapshotLock.lock();
+        try {
+            rollAndSnapshot();
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    // a snapshot that throws would cancel every later one, so the failure is logged and counted and the next run retries
+    private void snapshotIfWritten() {
+        if (writesSinceSnapshot.sum() == 0) {
+            return;
+        }
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            log.error("Snapshotting bookings failed", e);
+            BookingMetrics.SNAPSHOT_FAILURES.increment();
+        }
+    }
+
+    private void rollAndSnapshot() {
+        Journal previous;
+        long snapshotSegment;
+        segmentLock.writeLock().lock();
+        try {
+            // every change logged to the old segment has been applied to the delegate by now
+            previous = journal;
+            snapshotSegment = segment + 1;
+            journal = openSegment(snapshotSegment);
+            journal.replay((type, payload) -> {
+            });
+            segment = snapshotSegment;
+            writesSinceSnapshot.reset();
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+        previous.close();
+
+        try {
+            Path temp = directory.resolve(PREFIX + snapshotSegment + SNAPSHOT_SUFFIX + TEMP_SUFFIX);
+            writeSnapshot(temp);
+            Files.move(temp, path(snapshotSegment, SNAPSHOT_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+            for (Path file : files(SEGMENT_SUFFIX)) {
+                if (sequenceOf(file, SEGMENT_SUFFIX) < snapshotSegment) {
+                    Files.delete(file);
+                }
+            }
+            for (Path file : files(SNAPSHOT_SUFFIX)) {
+                if (sequenceOf(file, SNAPSHOT_SUFFIX) < snapshotSegment) {
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        snapshotLock.lock();
+        try {
+            if (snapshotter != null) {
+                snapshotter.shutdownNow();
+            }
+            journal.close();
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    // called under the segment read lock, after the change is applied to the delegate
+    private void log(byte type, byte[] record, Runnable undo) {
+        try {
+            journal.append(type, record);
+        } catch (RuntimeException e) {
+            undo.run();
+            throw e;
+        }
+        writesSinceSnapshot.increment();
+    }
+
+    // puts back what a write that could not be logged replaced, unless another writer has moved the booking on since
+    private void undo(String bookingId, VersionedBooking previous, long writtenVersion) {
+        if (previous == null) {
+            delegate.remove(bookingId, writtenVersion);
+        } else {
+            delegate.replace(bookingId, writtenVersion, previous.getBookingRequest());
+        }
+    }
+
+    private void recover() {
+        List<Long> snapshots = sequences(SNAPSHOT_SUFFIX);
+        long first = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+        if (!snapshots.isEmpty()) {
+            readSnapshot(path(first, SNAPSHOT_SUFFIX));
+        }
+        segment = first;
+        Map<String, Long> deletedVersions = new HashMap<>();
+        for (long sequence : sequences(SEGMENT_SUFFIX)) {
+            if (sequence < first) {
+                continue;
+            }
+            if (journal != null) {
+                journal.close();
+            }
+            journal = openSegment(sequence);
+            journal.replay((type, payload) -> apply(type, payload, deletedVersions));
+            segment = sequence;
+        }
+        if (journal == null) {
+            journal = openSegment(segment);
+            journal.replay((type, payload) -> apply(type, payload, deletedVersions));
+        }
+    }
+
+    // a save only wins over a lower version, a delete over every version up to the one it deleted, which it keeps
+    // outranking for saves logged after it
+    private void apply(byte type, ByteBuffer payload, Map<String, Long> deletedVersions) {
+        String bookingId = BookingRecordCodec.decodeId(payload);
+        VersionedBooking current = delegate.getVersioned(bookingId);
+        if (type == SAVE) {
+            BookingRequest bookingRequest = BookingRecordCodec.decodeBooking(payload);
+            long version = BookingRecordCodec.decodeVersion(payload);
+            if (version > deletedVersions.getOrDefault(bookingId, 0L)
+                    && (current == null || version > current.getVersion())) {
+                delegate.restore(bookingId, bookingRequest, version);
+            }
+        } else if (type == DELETE) {
+            long version = BookingRecordCodec.decodeVersion(payload);
+            deletedVersions.merge(bookingId, version, Math::max);
+            if (current != null && current.getVersion() <= version) {
+                delegate.remove(bookingId);
+            }
+        }
+    }
+
+    private void restoreDecoded(String bookingId, ByteBuffer payload) {
+        BookingRequest bookingRequest = BookingRecordCodec.decodeBooking(payload);
+        delegate.restore(bookingId, bookingRequest, BookingRecordCodec.decodeVersion(payload));
+    }
+
+    private void writeSnapshot(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            IOException[] failure = new IOException[1];
+            delegate.forEach((bookingId, bookingRequest) -> {
+                // booking and version from one record; a booking changed or removed since is fixed up by the tail
+                VersionedBooking booking = delegate.getVersioned(bookingId);
+                if (failure[0] == null && booking != null) {
+                    try {
+                        byte[] record = BookingRecordCodec.encode(bookingId, booking.getBookingRequest(),
+                                booking.getVersion());
+                        out.writeInt(record.length);
+                        out.write(record);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            out.writeInt(END_OF_SNAPSHOT);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private void readSnapshot(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            for (int length = in.readInt(); length != END_OF_SNAPSHOT; length = in.readInt()) {
+                byte[] record = new byte[length];
+                in.readFully(record);
+                ByteBuffer payload = ByteBuffer.wrap(record);
+                restoreDecoded(BookingRecordCodec.decodeId(payload), payload);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Journal openSegment(long sequence) {
+        return journalFactory.apply(path(sequence, SEGMENT_SUFFIX));
+    }
+
+    private Path path(long sequence, String suffix) {
+        return directory.resolve(PREFIX + sequence + suffix);
+    }
+
+    private List<Long> sequences(String suffix) {
+        return files(suffix).stream()
+                .map(file -> sequenceOf(file, suffix))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private List<Path> files(String suffix) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(suffix);
+            }).collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long sequenceOf(Path file, String suffix) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - suffix.length()));
+    }
+
+}
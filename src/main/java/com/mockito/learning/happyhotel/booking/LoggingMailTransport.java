@@ -0,0 +1,20 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// local stand-in for an SMTP relay: "delivers" confirmations to the log
+@Component
+public class LoggingMailTransport implements MailTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(LoggingMailTransport.class);
+
+    @Override
+    public void sendBookingConfirmations(List<String> bookingIds) {
+        log.info("Sending booking confirmations for {}", bookingIds);
+    }
+
+}
@@ -2,12 +2,31 @@ package com.mockito.learning.happyhotel.booking;
 
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 @Component
 public class MailSender {
 
+    private final ConfirmationOutbox outbox;
+
+    public MailSender(ConfirmationOutbox outbox) {
+        this.outbox = outbox;
+    }
+
     public void sendBookingConfirmation(String bookingId) {
-        // TODO Not done yet. John Smith to implement!
-        throw new UnsupportedOperationException("Not implemented yet");
+        long started = System.nanoTime();
+        outbox.enqueue(bookingId);
+        BookingMetrics.record(BookingMetrics.CONFIRMATION, started);
+    }
+
+    public void checkCapacity(int confirmations) {
+        outbox.checkCapacity(confirmations);
+    }
+
+    public void sendBookingConfirmations(List<String> bookingIds) {
+        long started = System.nanoTime();
+        outbox.enqueueAll(bookingIds);
+        BookingMetrics.record(BookingMetrics.CONFIRMATION, started);
     }
 
 }
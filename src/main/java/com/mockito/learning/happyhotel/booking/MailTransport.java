@@ -0,0 +1,9 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.util.List;
+
+public interface MailTransport {
+
+    void sendBookingConfirmations(List<String> bookingIds);
+
+}
@@ -0,0 +1,163 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Payments keyed by idempotency key, lock-striped by key. Each stripe keeps its entries in primitive columns:
+// amounts in minor units and snowflake payment ids as numbers, so millions of payments add no per-entry objects.
+// The stripe lock is a ReentrantLock, so virtual threads queueing on it, or paying under it, don't pin carriers.
+final class PaymentLedger {
+
+    private final Stripe[] stripes;
+    private final int stripeBits;
+
+    PaymentLedger() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    PaymentLedger(int minimumStripes) {
+        int stripeCount = Integer.highestOneBit(Math.max(1, minimumStripes - 1)) << 1;
+        this.stripeBits = Integer.numberOfTrailingZeros(stripeCount);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // the payment id on record for the key; if there is none, newPaymentId is called under the stripe lock and its
+    // id recorded, so concurrent retries with the same key charge exactly once
+    String recordIfAbsent(long key, long amountMinor, Supplier<String> newPaymentId) {
+        return stripeFor(key).recordIfAbsent(key, amountMinor, newPaymentId);
+    }
+
+    String getPaymentId(long key) {
+        return stripeFor(key).getPaymentId(key);
+    }
+
+    long getAmountMinor(long key) {
+        return stripeFor(key).getAmountMinor(key);
+    }
+
+    // beforeRemove runs under the stripe lock, ordered with any payment recorded for the same key
+    boolean remove(long key, Runnable beforeRemove) {
+        return stripeFor(key).remove(key, beforeRemove);
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private Stripe stripeFor(long key) {
+        return stripeBits == 0 ? stripes[0] : stripes[(int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - stripeBits))];
+    }
+
+    private static class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final LongIntHashMap slotsByKey = new LongIntHashMap();
+        // ids that aren't snowflakes, e.g. UUIDs, by slot
+        private final Map<Integer, String> otherPaymentIds = new HashMap<>();
+
+        private long[] paymentIds = new long[16];
+        private long[] amountsMinor = new long[16];
+
+        private int[] freeSlots = new int[16];
+        private int freeCount;
+        private int highWater;
+
+        String recordIfAbsent(long key, long amountMinor, Supplier<String> newPaymentId) {
+            lock.lock();
+            try {
+                int slot = slotsByKey.get(key);
+                if (slot != LongIntHashMap.MISSING) {
+                    return paymentId(slot);
+                }
+                String paymentId = newPaymentId.get();
+                slot = allocate();
+                paymentIds[slot] = SnowflakeIdGenerator.parseCanonical(paymentId);
+                if (paymentIds[slot] == 0) {
+                    otherPaymentIds.put(slot, paymentId);
+                }
+                amountsMinor[slot] = amountMinor;
+                slotsByKey.put(key, slot);
+                return paymentId;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        String getPaymentId(long key) {
+            lock.lock();
+            try {
+                int slot = slotsByKey.get(key);
+                return slot == LongIntHashMap.MISSING ? null : paymentId(slot);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long getAmountMinor(long key) {
+            lock.lock();
+            try {
+                int slot = slotsByKey.get(key);
+                return slot == LongIntHashMap.MISSING ? 0 : amountsMinor[slot];
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean remove(long key, Runnable beforeRemove) {
+            lock.lock();
+            try {
+                if (slotsByKey.get(key) == LongIntHashMap.MISSING) {
+                    return false;
+                }
+                beforeRemove.run();
+                int slot = slotsByKey.remove(key);
+                otherPaymentIds.remove(slot);
+                if (freeCount == freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+                }
+                freeSlots[freeCount++] = slot;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return slotsByKey.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private String paymentId(int slot) {
+            long paymentId = paymentIds[slot];
+            return paymentId != 0 ? SnowflakeIdGenerator.format(paymentId) : otherPaymentIds.get(slot);
+        }
+
+        private int allocate() {
+            if (freeCount > 0) {
+                return freeSlots[--freeCount];
+            }
+            if (highWater == paymentIds.length) {
+                paymentIds = Arrays.copyOf(paymentIds, highWater * 2);
+                amountsMinor = Arrays.copyOf(amountsMinor, highWater * 2);
+            }
+            return highWater++;
+        }
+
+    }
+
+}
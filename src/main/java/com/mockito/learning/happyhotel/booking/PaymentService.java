@@ -1,23 +1,154 @@
 package com.mockito.learning.happyhotel.booking;
 
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
 
 @Service
 public class PaymentService {
 
-    private final Map<String, Double> payments = new HashMap<>();
+    // journal records: payments as (key, payment id, amount) and refunds as their key
+    private static final byte PAYMENT = 1;
+    private static final byte REFUND = 2;
 
+    private final PaymentLedger ledger = new PaymentLedger();
+    private final Journal journal;
+    private final IdGenerator idGenerator;
+
+    public PaymentService() {
+        this.journal = null;
+        this.idGenerator = new SnowflakeIdGenerator(0);
+    }
+
+    @Autowired
+    public PaymentService(JournalSettings journalSettings, IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+        this.journal = journalSettings.isEnabled() ? journalSettings.open("payments") : null;
+        if (journal != null) {
+            journal.replay((type, payload) -> {
+                if (type == PAYMENT) {
+                    long key = payload.getLong();
+                    String id = BookingRecordCodec.getString(payload);
+                    ledger.recordIfAbsent(key, payload.getLong(), () -> id);
+                } else if (type == REFUND) {
+                    ledger.remove(payload.getLong(), () -> {
+                    });
+                }
+            });
+        }
+    }
+
+    // charges at most once per booking: a retry of an already paid booking gets the original payment id back
     public String pay(BookingRequest bookingRequest, double price) {
-        if (price > 200.0 && bookingRequest.getGuestCount() < 3) {
-            throw new UnsupportedOperationException("Only small payments are supported.");
+        RuntimeException declined = decline(bookingRequest, price);
+        if (declined != null) {
+            throw declined;
         }
-        String id = UUID.randomUUID().toString();
-        payments.put(id, price);
+        long started = System.nanoTime();
+        long key = idempotencyKey(bookingRequest);
+        long amountMinor = toMinorUnits(price);
+        String id = ledger.recordIfAbsent(key, amountMinor, () -> {
+            String paymentId = idGenerator.nextId();
+            if (journal != null) {
+                journal.append(PAYMENT, encode(key, paymentId, amountMinor));
+            }
+            return paymentId;
+        });
+        BookingMetrics.record(BookingMetrics.PAYMENT, started);
         return id;
     }
 
+    // charges every accepted request in one go; declined ones get a null payment id
+    public List<String> payAll(List<BookingRequest> bookingRequests, List<Double> prices) {
+        return payAll(bookingRequests, prices, (declined, index) -> {
+        });
+    }
+
+    // as above, and hands onDeclined what pay would have thrown for each declined request, with its index
+    public List<String> payAll(List<BookingRequest> bookingRequests, List<Double> prices,
+                               ObjIntConsumer<RuntimeException> onDeclined) {
+        List<String> ids = new ArrayList<>(bookingRequests.size());
+        List<byte[]> records = new ArrayList<>(bookingRequests.size());
+        for (int i = 0; i < bookingRequests.size(); i++) {
+            double price = prices.get(i);
+            RuntimeException declined = decline(bookingRequests.get(i), price);
+            if (declined != null) {
+                ids.add(null);
+                onDeclined.accept(declined, i);
+                continue;
+            }
+            long key = idempotencyKey(bookingRequests.get(i));
+            long amountMinor = toMinorUnits(price);
+            ids.add(ledger.recordIfAbsent(key, amountMinor, () -> {
+                String paymentId = idGenerator.nextId();
+                if (journal != null) {
+                    records.add(encode(key, paymentId, amountMinor));
+                }
+                return paymentId;
+            }));
+        }
+        // the batch is journaled after it is in the ledger, as one write; the caller only sees the ids afterwards
+        if (journal != null && !records.isEmpty()) {
+            journal.appendAll(PAYMENT, records);
+        }
+        return ids;
+    }
+
+    // gives back the booking's payment, if there is one, and frees its key for a later booking of the same stay
+    public boolean refund(BookingRequest bookingRequest) {
+        long key = idempotencyKey(bookingRequest);
+        return ledger.remove(key, () -> {
+            if (journal != null) {
+                journal.append(REFUND, ByteBuffer.allocate(Long.BYTES).putLong(key).array());
+            }
+        });
+    }
+
+    public String getPaymentId(BookingRequest bookingRequest) {
+        return ledger.getPaymentId(idempotencyKey(bookingRequest));
+    }
+
+    public int getPaymentCount() {
+        return ledger.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    // one key per booking attempt: a retried request, or one the client sent again with the same request id, pays
+    // once, while two bookings of the same stay are two payments
+    static long idempotencyKey(BookingRequest bookingRequest) {
+        return bookingRequest.getRequestKey();
+    }
+
+    private static long toMinorUnits(double price) {
+        return Math.round(price * 100);
+    }
+
+    // the reason a payment is declined, or null if it is accepted
+    private RuntimeException decline(BookingRequest bookingRequest, double price) {
+        if (price <= 200.0 || bookingRequest.getGuestCount() >= 3) {
+            return null;
+        }
+        return new UnsupportedOperationException("Only small payments are supported.");
+    }
+
+    private byte[] encode(long key, String id, long amountMinor) {
+        byte[] encodedId = BookingRecordCodec.utf8(id);
+        ByteBuffer record = ByteBuffer.allocate(Long.BYTES + BookingRecordCodec.size(encodedId) + Long.BYTES);
+        record.putLong(key);
+        BookingRecordCodec.putString(record, encodedId);
+        record.putLong(amountMinor);
+        return record.array();
+    }
+
 }
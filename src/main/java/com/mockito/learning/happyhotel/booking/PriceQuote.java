@@ -0,0 +1,34 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.util.Map;
+
+public class PriceQuote {
+
+    private final double priceUsd;
+    private final double priceEur;
+    // prices in any further currencies the client asked for, keyed by currency code
+    private final Map<String, Double> prices;
+
+    public PriceQuote(double priceUsd, double priceEur) {
+        this(priceUsd, priceEur, Map.of());
+    }
+
+    public PriceQuote(double priceUsd, double priceEur, Map<String, Double> prices) {
+        this.priceUsd = priceUsd;
+        this.priceEur = priceEur;
+        this.prices = prices;
+    }
+
+    public double getPriceUsd() {
+        return priceUsd;
+    }
+
+    public double getPriceEur() {
+        return priceEur;
+    }
+
+    public Map<String, Double> getPrices() {
+        return prices;
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+public class PricingConfiguration {
+
+    // seasons: from:to:factor, e.g. 2030-07-01:2030-09-01:1.5 (dateTo exclusive)
+    // room types: capacity:factor, e.g. 5:0.9
+    // length of stay: minimum nights:factor, e.g. 7:0.9,14:0.8
+    @Bean
+    public PricingEngine pricingEngine(
+            @Value("${happyhotel.pricing.base-price-usd:" + PricingEngine.DEFAULT_BASE_PRICE_USD + "}") double basePriceUsd,
+            @Value("${happyhotel.pricing.seasons:}") List<String> seasons,
+            @Value("${happyhotel.pricing.room-types:}") List<String> roomTypes,
+            @Value("${happyhotel.pricing.length-of-stay:}") List<String> lengthOfStay) {
+        List<SeasonalRate> seasonalRates = seasons.stream()
+                .map(season -> season.trim().split(":"))
+                .map(parts -> new SeasonalRate(LocalDate.parse(parts[0]), LocalDate.parse(parts[1]),
+                        Double.parseDouble(parts[2])))
+                .toList();
+        return new PricingEngine(basePriceUsd, seasonalRates, factors(roomTypes), factors(lengthOfStay));
+    }
+
+    private static Map<Integer, Double> factors(List<String> entries) {
+        Map<Integer, Double> factors = new HashMap<>();
+        for (String entry : entries) {
+            String[] parts = entry.trim().split(":");
+            factors.put(Integer.parseInt(parts[0]), Double.parseDouble(parts[1]));
+        }
+        return factors;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Prices a stay from tables compiled up front: the per-guest nightly rate in cents, with seasonal rates applied,
+// is kept as a prefix sum over epoch days, so any stay costs two array reads whatever its length.
+public class PricingEngine {
+
+    public static final double DEFAULT_BASE_PRICE_USD = 50.0;
+
+    // cumulativeCents[d] = per-guest rate of every night before epoch day d
+    private final long[] cumulativeCents;
+    // per-guest rate multiplier by room type, i.e. room capacity; 1.0 past the end
+    private final double[] roomTypeFactors;
+    // price multiplier by number of nights; the last entry applies to every longer stay
+    private final double[] lengthOfStayFactors;
+
+    public PricingEngine() {
+        this(DEFAULT_BASE_PRICE_USD, List.of(), Map.of(), Map.of());
+    }
+
+    // lengthOfStayFactors maps a minimum number of nights to the multiplier for stays at least that long
+    public PricingEngine(double basePriceUsd, List<SeasonalRate> seasonalRates, Map<Integer, Double> roomTypeFactors,
+                         Map<Integer, Double> lengthOfStayFactors) {
+        double[] nightlyFactors = new double[AvailabilityCalendar.MAX_EPOCH_DAY];
+        Arrays.fill(nightlyFactors, 1.0);
+        for (SeasonalRate seasonalRate : seasonalRates) {
+            int from = (int) Math.max(0, seasonalRate.getDateFrom().toEpochDay());
+            int to = (int) Math.min(nightlyFactors.length, seasonalRate.getDateTo().toEpochDay());
+            for (int night = from; night < to; night++) {
+                nightlyFactors[night] = seasonalRate.getFactor();
+            }
+        }
+        cumulativeCents = new long[nightlyFactors.length + 1];
+        for (int night = 0; night < nightlyFactors.length; night++) {
+            cumulativeCents[night + 1] = cumulativeCents[night] + Math.round(basePriceUsd * 100 * nightlyFactors[night]);
+        }
+
+        this.roomTypeFactors = new double[maxKey(roomTypeFactors) + 1];
+        Arrays.fill(this.roomTypeFactors, 1.0);
+        roomTypeFactors.forEach((capacity, factor) -> this.roomTypeFactors[capacity] = factor);
+
+        this.lengthOfStayFactors = new double[Math.max(0, maxKey(lengthOfStayFactors)) + 1];
+        double factor = 1.0;
+        for (int nights = 0; nights < this.lengthOfStayFactors.length; nights++) {
+            factor = lengthOfStayFactors.getOrDefault(nights, factor);
+            this.lengthOfStayFactors[nights] = factor;
+        }
+    }
+
+    public double price(BookingRequest bookingRequest) {
+        long from = bookingRequest.getDateFrom().toEpochDay();
+        long to = bookingRequest.getDateTo().toEpochDay();
+        if (from < 0 || to > AvailabilityCalendar.MAX_EPOCH_DAY || from > to) {
+            throw new BusinessException();
+        }
+        int guests = bookingRequest.getGuestCount();
+        int nights = (int) (to - from);
+        long cents = (cumulativeCents[(int) to] - cumulativeCents[(int) from]) * guests;
+        double roomTypeFactor = guests >= 0 && guests < roomTypeFactors.length ? roomTypeFactors[guests] : 1.0;
+        double lengthOfStayFactor = lengthOfStayFactors[Math.min(nights, lengthOfStayFactors.length - 1)];
+        return Math.round(cents * roomTypeFactor * lengthOfStayFactor) / 100.0;
+    }
+
+    private static int maxKey(Map<Integer, Double> factors) {
+        return factors.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1);
+    }
+
+}
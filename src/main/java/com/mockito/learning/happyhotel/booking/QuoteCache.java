@@ -0,0 +1,54 @@
+package com.mockito.learning.happyhotel.booking;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Bounded W-TinyLFU cache of price quotes for repeated searches. The key includes the pricing engine and the
+// exchange rate snapshot a quote was made with, so a new snapshot never sees stale prices; the old entries are
+// simply no longer looked up and age out through size and time eviction.
+@Component
+public class QuoteCache {
+
+    private final Cache<Key, PriceQuote> quotes;
+
+    public QuoteCache() {
+        this(100_000, 600_000);
+    }
+
+    @Autowired
+    public QuoteCache(@Value("${happyhotel.quotes.cache.maximum-size:100000}") long maximumSize,
+                      @Value("${happyhotel.quotes.cache.expire-after-write-ms:600000}") long expireAfterWriteMillis) {
+        this.quotes = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(expireAfterWriteMillis))
+                .recordStats()
+                .build();
+    }
+
+    // only the Spring bean reports its statistics; every cache made with `new` would otherwise add its own meters
+    @PostConstruct
+    public void registerMetrics() {
+        BookingMetrics.quotes(quotes);
+    }
+
+    public PriceQuote get(BookingRequest bookingRequest, List<String> currencies, PricingEngine pricingEngine,
+                          ExchangeRates rates, Supplier<PriceQuote> quote) {
+        Key key = new Key(bookingRequest.getDateFrom().toEpochDay(), bookingRequest.getDateTo().toEpochDay(),
+                bookingRequest.getGuestCount(), List.copyOf(currencies), pricingEngine, rates);
+        return quotes.get(key, ignored -> quote.get());
+    }
+
+    // pricing engine and rates compare by identity: each rate table or snapshot is its own cache generation
+    private record Key(long dateFrom, long dateTo, int guestCount, List<String> currencies,
+                       PricingEngine pricingEngine, ExchangeRates rates) {
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.mockito.learning.happyhotel.booking;
+
+import com.mockito.learning.happyhotel.booking.AvailabilityCalendar.Stay;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+class RoomCalendar {
+
+    // booked stays as [from, to) epoch-day pairs, sorted and non-overlapping: {from0, to0, from1, to1, ...}
+    // writers copy and swap the array, so readers never lock and never see a half-applied booking
+    private final AtomicReference<long[]> bookedStays = new AtomicReference<>(new long[0]);
+
+    boolean isFree(long from, long to) {
+        long[] stays = bookedStays.get();
+        return isFree(stays, lastStayStartingBefore(stays, to), from);
+    }
+
+    boolean book(long from, long to) {
+        while (true) {
+            long[] stays = bookedStays.get();
+            int preceding = lastStayStartingBefore(stays, to);
+            if (!isFree(stays, preceding, from)) {
+                return false;
+            }
+            if (bookedStays.compareAndSet(stays, with(stays, preceding, from, to))) {
+                return true;
+            }
+        }
+    }
+
+    boolean release(long from, long to) {
+        while (true) {
+            long[] stays = bookedStays.get();
+            int stay = indexOf(stays, from, to);
+            if (stay < 0) {
+                return false;
+            }
+            if (bookedStays.compareAndSet(stays, without(stays, stay))) {
+                return true;
+            }
+        }
+    }
+
+    Stay releaseCovering(long from, long to) {
+        while (true) {
+            long[] stays = bookedStays.get();
+            int stay = lastStayStartingBefore(stays, from + 1);
+            if (stay < 0 || stays[stay * 2 + 1] < to) {
+                return null;
+            }
+            if (bookedStays.compareAndSet(stays, without(stays, stay))) {
+                return new Stay(stays[stay * 2], stays[stay * 2 + 1]);
+            }
+        }
+    }
+
+    // swaps the stay [from, to) for [newFrom, newTo) in one step; false if the stay isn't booked or another stay
+    // takes any of the new nights
+    boolean move(long from, long to, long newFrom, long newTo) {
+        while (true) {
+            long[] stays = bookedStays.get();
+            int stay = indexOf(stays, from, to);
+            if (stay < 0) {
+                return false;
+            }
+            long[] others = without(stays, stay);
+            int preceding = lastStayStartingBefore(others, newTo);
+            if (!isFree(others, preceding, newFrom)) {
+                return false;
+            }
+            if (bookedStays.compareAndSet(stays, with(others, preceding, newFrom, newTo))) {
+                return true;
+            }
+        }
+    }
+
+    int bookedStayCount() {
+        return bookedStays.get().length / 2;
+    }
+
+    private static int indexOf(long[] stays, long from, long to) {
+        int stay = lastStayStartingBefore(stays, from + 1);
+        return stay < 0 || stays[stay * 2] != from || stays[stay * 2 + 1] != to ? -1 : stay;
+    }
+
+    private static long[] with(long[] stays, int preceding, long from, long to) {
+        int insertAt = (preceding + 1) * 2;
+        long[] updated = new long[stays.length + 2];
+        System.arraycopy(stays, 0, updated, 0, insertAt);
+        updated[insertAt] = from;
+        updated[insertAt + 1] = to;
+        System.arraycopy(stays, insertAt, updated, insertAt + 2, stays.length - insertAt);
+        return updated;
+    }
+
+    private static long[] without(long[] stays, int stay) {
+        long[] updated = new long[stays.length - 2];
+        System.arraycopy(stays, 0, updated, 0, stay * 2);
+        System.arraycopy(stays, stay * 2 + 2, updated, stay * 2, updated.length - stay * 2);
+        return updated;
+    }
+
+    private static boolean isFree(long[] stays, int preceding, long from) {
+        // stays don't overlap, so only the last one starting before 'to' can reach into [from, to)
+        return preceding < 0 || stays[preceding * 2 + 1] <= from;
+    }
+
+    private static int lastStayStartingBefore(long[] stays, long day) {
+        int low = 0;
+        int high = stays.length / 2 - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (stays[middle * 2] < day) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+// A room held for one stay by RoomService.holdRoom until it is confirmed, released or expires:
+// HELD -> CONFIRMED on confirm, HELD -> RELEASED on expiry, HELD or CONFIRMED -> RELEASED on release.
+// Every transition is a CAS, so expiry, confirmation and release never act on a hold twice.
+public class RoomHold extends HashedTimingWheel.Timeout {
+
+    static final int HELD = 0;
+    static final int CONFIRMED = 1;
+    static final int RELEASED = 2;
+
+    // a field updater instead of an AtomicInteger saves an object per hold
+    private static final AtomicIntegerFieldUpdater<RoomHold> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(RoomHold.class, "state");
+
+    private final String roomId;
+    private final int ordinal;
+    private final int from;
+    private final int to;
+    private volatile int state = HELD;
+
+    RoomHold(String roomId, int ordinal, long from, long to) {
+        this.roomId = roomId;
+        this.ordinal = ordinal;
+        this.from = (int) from;
+        this.to = (int) to;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public LocalDate getDateFrom() {
+        return LocalDate.ofEpochDay(from);
+    }
+
+    public LocalDate getDateTo() {
+        return LocalDate.ofEpochDay(to);
+    }
+
+    public boolean isHeld() {
+        return state == HELD;
+    }
+
+    int getOrdinal() {
+        return ordinal;
+    }
+
+    long getFrom() {
+        return from;
+    }
+
+    long getTo() {
+        return to;
+    }
+
+    boolean confirm() {
+        return STATE.compareAndSet(this, HELD, CONFIRMED);
+    }
+
+    boolean expire() {
+        return STATE.compareAndSet(this, HELD, RELEASED);
+    }
+
+    // the state the hold was released from, or RELEASED if it had been released already
+    int release() {
+        while (true) {
+            int current = state;
+            if (current == RELEASED || STATE.compareAndSet(this, current, RELEASED)) {
+                return current;
+            }
+        }
+    }
+
+}
@@ -1,64 +1,349 @@
 package com.mockito.learning.happyhotel.booking;
 
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 @Service
 public class RoomService {
 
-    private final Map<Room, Boolean> roomAvailability;
+    // rooms are sorted by capacity, so every capacity owns a contiguous range of ordinals
+    private final List<Room> rooms;
+    private final Map<String, Integer> ordinalsById;
+    private final Map<Integer, int[]> ordinalRangesByCapacity;
+    private final int totalCapacity;
+    // booked places per night, indexed by epoch day, so the free capacity of any night is a single read
+    private final AtomicIntegerArray bookedPlacesByNight = new AtomicIntegerArray(AvailabilityCalendar.MAX_EPOCH_DAY);
+    private final AvailabilityCalendar calendar;
+    private final Clock clock;
+    // tonight's epoch day and the millis it spans in the clock's zone, so counting free places allocates nothing
+    // until the clock passes midnight
+    private volatile Tonight tonight = new Tonight(0, 0, Long.MIN_VALUE);
+    // one timing wheel expires every hold, so a hold costs a small object and no scheduled task; holds expire
+    // within a tick of their deadline
+    private final HashedTimingWheel<RoomHold> holdExpiries =
+            new HashedTimingWheel<>("room-hold-expiry", 10, 512, this::expireHold);
+    private final AtomicInteger activeHolds = new AtomicInteger();
 
-    {
-        roomAvailability = new HashMap<>();
-        roomAvailability.put(new Room("1.1", 2), true);
-        roomAvailability.put(new Room("1.2", 2), true);
-        roomAvailability.put(new Room("1.3", 5), true);
-        roomAvailability.put(new Room("2.1", 3), true);
-        roomAvailability.put(new Room("2.2", 4), true);
+    public RoomService() {
+        this(AvailabilityCalendarType.INTERVAL);
+    }
+
+    @Autowired
+    public RoomService(@Value("${happyhotel.rooms.calendar:interval}") AvailabilityCalendarType calendarType) {
+        this(calendarType, Clock.systemDefaultZone());
+    }
+
+    RoomService(AvailabilityCalendarType calendarType, Clock clock) {
+        this(defaultInventory(), calendarType, clock);
+    }
+
+    RoomService(List<Room> inventory, AvailabilityCalendarType calendarType, Clock clock) {
+        List<Room> sorted = new ArrayList<>(inventory);
+        sorted.sort(Comparator.comparingInt(Room::getCapacity));
+
+        rooms = List.copyOf(sorted);
+        ordinalsById = new HashMap<>();
+        ordinalRangesByCapacity = new HashMap<>();
+        for (int ordinal = 0; ordinal < rooms.size(); ordinal++) {
+            Room room = rooms.get(ordinal);
+            int first = ordinal;
+            ordinalsById.put(room.getId(), ordinal);
+            ordinalRangesByCapacity.computeIfAbsent(room.getCapacity(), capacity -> new int[]{first, first})[1] = ordinal + 1;
+        }
+        totalCapacity = rooms.stream().mapToInt(Room::getCapacity).sum();
+        this.calendar = calendarType == AvailabilityCalendarType.BITMAP
+                ? new BitmapAvailabilityCalendar(rooms.size())
+                : new IntervalAvailabilityCalendar(rooms.size());
+        this.clock = clock;
+    }
+
+    private static List<Room> defaultInventory() {
+        List<Room> inventory = new ArrayList<>();
+        inventory.add(new Room("1.1", 2));
+        inventory.add(new Room("1.2", 2));
+        inventory.add(new Room("1.3", 5));
+        inventory.add(new Room("2.1", 3));
+        inventory.add(new Room("2.2", 4));
+        return inventory;
     }
 
     public String findAvailableRoomId(BookingRequest bookingRequest) {
-        return roomAvailability.entrySet().stream()
-                .filter(entry -> entry.getValue()).map(entry -> entry.getKey())
-                .filter(room -> room.getCapacity() == bookingRequest.getGuestCount())
-                .findFirst()
-                .map(room -> room.getId())
-                .orElseThrow(BusinessException::new);
+        long from = bookingRequest.getDateFrom().toEpochDay();
+        long to = bookingRequest.getDateTo().toEpochDay();
+        int[] range = ordinalRangesByCapacity.get(bookingRequest.getGuestCount());
+        int ordinal = range == null || from >= to ? -1 : calendar.nextFreeRoom(range[0], range[1], from, to);
+        if (ordinal < 0) {
+            throw new BusinessException();
+        }
+        return rooms.get(ordinal).getId();
+    }
+
+    public String claimAvailableRoomId(BookingRequest bookingRequest) {
+        return rooms.get(claimOrdinal(bookingRequest)).getId();
+    }
+
+    // claims a room that goes back on sale after holdTime unless the hold is confirmed first
+    public RoomHold holdRoom(BookingRequest bookingRequest, Duration holdTime) {
+        int ordinal = claimOrdinal(bookingRequest);
+        RoomHold hold = new RoomHold(rooms.get(ordinal).getId(), ordinal,
+                bookingRequest.getDateFrom().toEpochDay(), bookingRequest.getDateTo().toEpochDay());
+        activeHolds.incrementAndGet();
+        holdExpiries.schedule(hold, holdTime.toMillis());
+        return hold;
+    }
+
+    // turns the hold into a booking; false when it has expired or was released, and the room may be gone
+    public boolean confirmHold(RoomHold hold) {
+        if (!hold.confirm()) {
+            return false;
+        }
+        activeHolds.decrementAndGet();
+        holdExpiries.cancel(hold);
+        return true;
+    }
+
+    // gives the room back at once, held or confirmed; false when it was released or expired before
+    public boolean releaseHold(RoomHold hold) {
+        int state = hold.release();
+        if (state == RoomHold.RELEASED) {
+            return false;
+        }
+        if (state == RoomHold.HELD) {
+            activeHolds.decrementAndGet();
+            holdExpiries.cancel(hold);
+        }
+        free(hold);
+        return true;
+    }
+
+    public int getActiveHoldCount() {
+        return activeHolds.get();
+    }
+
+    @PreDestroy
+    public void close() {
+        holdExpiries.stop();
+    }
+
+    // claims a room for every request it can, null where none is left; requests for the same capacity and dates
+    // are served in one sweep over their rooms instead of rescanning the rooms taken earlier in the batch
+    public List<String> claimAvailableRoomIds(List<BookingRequest> bookingRequests) {
+        int[] ordinals = claimOrdinals(bookingRequests);
+        String[] roomIds = new String[ordinals.length];
+        for (int i = 0; i < ordinals.length; i++) {
+            roomIds[i] = ordinals[i] < 0 ? null : rooms.get(ordinals[i]).getId();
+        }
+        return Arrays.asList(roomIds);
+    }
+
+    // holds a room for every request it can, as holdRoom does, null where none is left; claimed in one sweep as
+    // claimAvailableRoomIds does
+    public List<RoomHold> holdRooms(List<BookingRequest> bookingRequests, Duration holdTime) {
+        int[] ordinals = claimOrdinals(bookingRequests);
+        RoomHold[] holds = new RoomHold[ordinals.length];
+        for (int i = 0; i < ordinals.length; i++) {
+            if (ordinals[i] >= 0) {
+                BookingRequest bookingRequest = bookingRequests.get(i);
+                holds[i] = new RoomHold(rooms.get(ordinals[i]).getId(), ordinals[i],
+                        bookingRequest.getDateFrom().toEpochDay(), bookingRequest.getDateTo().toEpochDay());
+                activeHolds.incrementAndGet();
+                holdExpiries.schedule(holds[i], holdTime.toMillis());
+            }
+        }
+        return Arrays.asList(holds);
+    }
+
+    private int[] claimOrdinals(List<BookingRequest> bookingRequests) {
+        int[] ordinals = new int[bookingRequests.size()];
+        Arrays.fill(ordinals, -1);
+        Integer[] order = new Integer[bookingRequests.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingInt(i -> bookingRequests.get(i).getGuestCount())
+                .thenComparing(i -> bookingRequests.get(i).getDateFrom())
+                .thenComparing(i -> bookingRequests.get(i).getDateTo()));
+
+        BookingRequest previous = null;
+        int cursor = 0;
+        for (int index : order) {
+            BookingRequest bookingRequest = bookingRequests.get(index);
+            long from = bookingRequest.getDateFrom().toEpochDay();
+            long to = bookingRequest.getDateTo().toEpochDay();
+            int[] range = ordinalRangesByCapacity.get(bookingRequest.getGuestCount());
+            if (range == null || from >= to) {
+                continue;
+            }
+            if (previous == null || previous.getGuestCount() != bookingRequest.getGuestCount()
+                    || !previous.getDateFrom().equals(bookingRequest.getDateFrom())
+                    || !previous.getDateTo().equals(bookingRequest.getDateTo())) {
+                cursor = range[0];
+            }
+            previous = bookingRequest;
+            int ordinal = claim(cursor, range[1], from, to);
+            ordinals[index] = ordinal;
+            cursor = ordinal < 0 ? range[1] : ordinal + 1;
+        }
+        return ordinals;
     }
 
     public final List<Room> getAvailableRooms() {
-        return roomAvailability.entrySet().stream()
-                .filter(entry -> entry.getValue())
-                .map(entry -> entry.getKey())
-                .collect(Collectors.toList());
+        LocalDate today = LocalDate.now(clock);
+        return getAvailableRooms(today, today.plusDays(1));
+    }
+
+    public List<Room> getAvailableRooms(LocalDate dateFrom, LocalDate dateTo) {
+        long from = dateFrom.toEpochDay();
+        long to = dateTo.toEpochDay();
+        List<Room> availableRooms = new ArrayList<>();
+        for (int ordinal = calendar.nextFreeRoom(0, rooms.size(), from, to); ordinal >= 0;
+             ordinal = calendar.nextFreeRoom(ordinal + 1, rooms.size(), from, to)) {
+            availableRooms.add(rooms.get(ordinal));
+        }
+        return availableRooms;
+    }
+
+    public int getAvailablePlaceCount() {
+        return totalCapacity - bookedPlacesByNight.get(tonight());
+    }
+
+    private int tonight() {
+        long now = clock.millis();
+        Tonight current = tonight;
+        if (now < current.startMillis() || now >= current.endMillis()) {
+            ZoneId zone = clock.getZone();
+            LocalDate today = LocalDate.ofInstant(Instant.ofEpochMilli(now), zone);
+            current = new Tonight((int) today.toEpochDay(), today.atStartOfDay(zone).toInstant().toEpochMilli(),
+                    today.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+            tonight = current;
+        }
+        return current.epochDay();
     }
 
     public int getRoomCount() {
-        return roomAvailability.size();
+        return rooms.size();
+    }
+
+    public void bookRoom(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+        int ordinal = ordinalOf(roomId);
+        long from = dateFrom.toEpochDay();
+        long to = dateTo.toEpochDay();
+        if (from >= to || !calendar.book(ordinal, from, to)) {
+            throw new BusinessException();
+        }
+        adjustBookedPlaces(ordinal, from, to, 1);
     }
 
-    public void bookRoom(String roomId) {
-        Room room = roomAvailability.entrySet().stream()
-                .filter(entry -> entry.getKey().getId().equals(roomId) && entry.getValue())
-                .findFirst()
-                .map(entry -> entry.getKey())
-                .orElseThrow(BusinessException::new);
+    public void unbookRoom(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+        int ordinal = ordinalOf(roomId);
+        long from = dateFrom.toEpochDay();
+        long to = dateTo.toEpochDay();
+        if (!calendar.release(ordinal, from, to)) {
+            throw new BusinessException();
+        }
+        adjustBookedPlaces(ordinal, from, to, -1);
+    }
 
-        roomAvailability.put(room, true);
+    // releases the stay that holds a booking's dates, with any nights a change in progress has grown it by in place:
+    // whoever takes a booking back frees every night its room holds for it at that moment
+    public void releaseStay(String roomId, LocalDate dateFrom, LocalDate dateTo) {
+        int ordinal = ordinalOf(roomId);
+        AvailabilityCalendar.Stay stay = calendar.releaseCovering(ordinal, dateFrom.toEpochDay(), dateTo.toEpochDay());
+        if (stay == null) {
+            throw new BusinessException();
+        }
+        adjustBookedPlaces(ordinal, stay.from(), stay.to(), -1);
     }
 
-    public void unbookRoom(String roomId) {
-        Room room = roomAvailability.entrySet().stream()
-                .filter(entry -> entry.getKey().getId().equals(roomId) && !entry.getValue())
-                .findFirst()
-                .map(entry -> entry.getKey())
-                .orElseThrow(BusinessException::new);
+    // moves a booked stay to new dates in the same room without letting go of the nights both share; false, with
+    // the stay unchanged, if the room is taken on any of the new nights
+    public boolean moveStay(String roomId, LocalDate dateFrom, LocalDate dateTo, LocalDate newDateFrom,
+                            LocalDate newDateTo) {
+        int ordinal = ordinalOf(roomId);
+        long from = dateFrom.toEpochDay();
+        long to = dateTo.toEpochDay();
+        long newFrom = newDateFrom.toEpochDay();
+        long newTo = newDateTo.toEpochDay();
+        if (!calendar.move(ordinal, from, to, newFrom, newTo)) {
+            return false;
+        }
+        adjustBookedPlaces(ordinal, newFrom, Math.min(newTo, from), 1);
+        adjustBookedPlaces(ordinal, Math.max(newFrom, to), newTo, 1);
+        adjustBookedPlaces(ordinal, from, Math.min(to, newFrom), -1);
+        adjustBookedPlaces(ordinal, Math.max(from, newTo), to, -1);
+        return true;
+    }
+
+    private void adjustBookedPlaces(int ordinal, long from, long to, int sign) {
+        int delta = sign * rooms.get(ordinal).getCapacity();
+        long lastNight = Math.min(to, AvailabilityCalendar.MAX_EPOCH_DAY);
+        for (long night = Math.max(from, 0); night < lastNight; night++) {
+            bookedPlacesByNight.addAndGet((int) night, delta);
+        }
+    }
+
+    private void expireHold(RoomHold hold) {
+        if (hold.expire()) {
+            activeHolds.decrementAndGet();
+            free(hold);
+        }
+    }
+
+    private void free(RoomHold hold) {
+        if (calendar.release(hold.getOrdinal(), hold.getFrom(), hold.getTo())) {
+            adjustBookedPlaces(hold.getOrdinal(), hold.getFrom(), hold.getTo(), -1);
+        }
+    }
+
+    private int claimOrdinal(BookingRequest bookingRequest) {
+        long started = System.nanoTime();
+        long from = bookingRequest.getDateFrom().toEpochDay();
+        long to = bookingRequest.getDateTo().toEpochDay();
+        int[] range = ordinalRangesByCapacity.get(bookingRequest.getGuestCount());
+        int ordinal = range == null || from >= to ? -1 : claim(range[0], range[1], from, to);
+        BookingMetrics.record(BookingMetrics.ROOM_SEARCH, started);
+        if (ordinal < 0) {
+            throw new BusinessException();
+        }
+        return ordinal;
+    }
+
+    private int claim(int fromOrdinal, int toOrdinal, long from, long to) {
+        for (int ordinal = calendar.nextFreeRoom(fromOrdinal, toOrdinal, from, to); ordinal >= 0;
+             ordinal = calendar.nextFreeRoom(ordinal + 1, toOrdinal, from, to)) {
+            if (calendar.book(ordinal, from, to)) {
+                adjustBookedPlaces(ordinal, from, to, 1);
+                return ordinal;
+            }
+        }
+        return -1;
+    }
+
+    private record Tonight(int epochDay, long startMillis, long endMillis) {
+    }
 
-        roomAvailability.put(room, false);
+    private int ordinalOf(String roomId) {
+        Integer ordinal = ordinalsById.get(roomId);
+        if (ordinal == null) {
+            throw new BusinessException();
+        }
+        return ordinal;
     }
 
 }
@@ -0,0 +1,30 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.time.LocalDate;
+
+// rate multiplier for the nights in [dateFrom, dateTo)
+public class SeasonalRate {
+
+    private final LocalDate dateFrom;
+    private final LocalDate dateTo;
+    private final double factor;
+
+    public SeasonalRate(LocalDate dateFrom, LocalDate dateTo, double factor) {
+        this.dateFrom = dateFrom;
+        this.dateTo = dateTo;
+        this.factor = factor;
+    }
+
+    public LocalDate getDateFrom() {
+        return dateFrom;
+    }
+
+    public LocalDate getDateTo() {
+        return dateTo;
+    }
+
+    public double getFactor() {
+        return factor;
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.mockito.learning.happyhotel.booking;
+
+public class ShardStats {
+
+    private final int shard;
+    private final int size;
+    private final long reads;
+    private final long writes;
+
+    public ShardStats(int shard, int size, long reads, long writes) {
+        this.shard = shard;
+        this.size = size;
+        this.reads = reads;
+        this.writes = writes;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getReads() {
+        return reads;
+    }
+
+    public long getWrites() {
+        return writes;
+    }
+
+}
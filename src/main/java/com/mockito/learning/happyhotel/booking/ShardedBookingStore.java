@@ -0,0 +1,139 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+public class ShardedBookingStore implements BookingStore {
+
+    private final Shard[] shards;
+    private final int shardBits;
+
+    public ShardedBookingStore() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    public ShardedBookingStore(int minimumShards) {
+        int shardCount = Integer.highestOneBit(Math.max(1, minimumShards - 1)) << 1;
+        this.shardBits = Integer.numberOfTrailingZeros(shardCount);
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    @Override
+    public void put(String bookingId, BookingRequest bookingRequest) {
+        Shard shard = shardFor(bookingId);
+        shard.writes.increment();
+        shard.bookings.compute(bookingId, (id, current) ->
+                new VersionedBooking(bookingRequest, current == null ? 1 : current.getVersion() + 1));
+    }
+
+    @Override
+    public void putAll(Map<String, BookingRequest> bookings) {
+        bookings.forEach(this::put);
+    }
+
+    @Override
+    public BookingRequest get(String bookingId) {
+        Shard shard = shardFor(bookingId);
+        shard.reads.increment();
+        VersionedBooking booking = shard.bookings.get(bookingId);
+        return booking == null ? null : booking.getBookingRequest();
+    }
+
+    @Override
+    public void remove(String bookingId) {
+        Shard shard = shardFor(bookingId);
+        shard.writes.increment();
+        shard.bookings.remove(bookingId);
+    }
+
+    @Override
+    public VersionedBooking getVersioned(String bookingId) {
+        Shard shard = shardFor(bookingId);
+        shard.reads.increment();
+        return shard.bookings.get(bookingId);
+    }
+
+    // a failed version check returns without writing; the swap itself only succeeds on the very record checked
+    @Override
+    public boolean replace(String bookingId, long expectedVersion, BookingRequest bookingRequest) {
+        Shard shard = shardFor(bookingId);
+        VersionedBooking current = shard.bookings.get(bookingId);
+        if (current == null || current.getVersion() != expectedVersion) {
+            return false;
+        }
+        shard.writes.increment();
+        return shard.bookings.replace(bookingId, current, new VersionedBooking(bookingRequest, expectedVersion + 1));
+    }
+
+    @Override
+    public boolean remove(String bookingId, long expectedVersion) {
+        Shard shard = shardFor(bookingId);
+        VersionedBooking current = shard.bookings.get(bookingId);
+        if (current == null || current.getVersion() != expectedVersion) {
+            return false;
+        }
+        shard.writes.increment();
+        return shard.bookings.remove(bookingId, current);
+    }
+
+    @Override
+    public void restore(String bookingId, BookingRequest bookingRequest, long version) {
+        Shard shard = shardFor(bookingId);
+        shard.writes.increment();
+        shard.bookings.put(bookingId, new VersionedBooking(bookingRequest, version));
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.bookings.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, BookingRequest> action) {
+        for (Shard shard : shards) {
+            shard.bookings.forEach((bookingId, booking) -> action.accept(bookingId, booking.getBookingRequest()));
+        }
+    }
+
+    public List<ShardStats> getShardStats() {
+        List<ShardStats> stats = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            stats.add(getShardStats(i));
+        }
+        return stats;
+    }
+
+    ShardStats getShardStats(int shard) {
+        return new ShardStats(shard, shards[shard].bookings.size(), shards[shard].reads.sum(),
+                shards[shard].writes.sum());
+    }
+
+    int getShardCount() {
+        return shards.length;
+    }
+
+    private Shard shardFor(String bookingId) {
+        // take the high bits of a multiplicative hash; ConcurrentHashMap buckets on the low ones
+        return shardBits == 0 ? shards[0] : shards[(bookingId.hashCode() * 0x9E3779B9) >>> (32 - shardBits)];
+    }
+
+    private static class Shard {
+
+        private final ConcurrentHashMap<String, VersionedBooking> bookings = new ConcurrentHashMap<>();
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder writes = new LongAdder();
+
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 64-bit, time-ordered ids: 41 bits of milliseconds since 2020-01-01, 10 bits of node, 12 bits of sequence.
+// Their string form is 13 Crockford base32 characters, which sort in the same order as the numbers.
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    static final long EPOCH_MILLIS = Instant.parse("2020-01-01T00:00:00Z").toEpochMilli();
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE = (1L << NODE_BITS) - 1;
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int STRING_LENGTH = 13;
+
+    private final long node;
+    private final Clock clock;
+    // last issued (timestamp << SEQUENCE_BITS | sequence)
+    private final AtomicLong lastState = new AtomicLong();
+
+    public SnowflakeIdGenerator(long node) {
+        this(node, Clock.systemUTC());
+    }
+
+    SnowflakeIdGenerator(long node, Clock clock) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node must be between 0 and " + MAX_NODE);
+        }
+        this.node = node;
+        this.clock = clock;
+    }
+
+    @Override
+    public String nextId() {
+        return format(nextLongId());
+    }
+
+    public long nextLongId() {
+        long now = (clock.millis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        while (true) {
+            long last = lastState.get();
+            // a run of more than 4096 ids in one millisecond, or a clock step backwards, borrows the next
+            // millisecond instead of waiting, which keeps ids strictly increasing
+            long next = Math.max(now, last + 1);
+            if (lastState.compareAndSet(last, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+                return timestamp << (NODE_BITS + SEQUENCE_BITS) | node << SEQUENCE_BITS | sequence;
+            }
+        }
+    }
+
+    public static String format(long id) {
+        char[] chars = new char[STRING_LENGTH];
+        for (int i = STRING_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    public static long parse(String id) {
+        long value = 0;
+        for (int i = 0; i < id.length(); i++) {
+            int digit = indexOf(id.charAt(i));
+            if (digit < 0) {
+                throw new IllegalArgumentException("Not a snowflake id: " + id);
+            }
+            value = value << 5 | digit;
+        }
+        return value;
+    }
+
+    // the id's number if the string is exactly what format would produce for it, otherwise 0
+    static long parseCanonical(String id) {
+        // 13 characters carry 65 bits, so the first one may only use its low 4
+        if (id.length() != STRING_LENGTH || indexOf(id.charAt(0)) < 0 || indexOf(id.charAt(0)) >= 16) {
+            return 0;
+        }
+        long value = 0;
+        for (int i = 0; i < STRING_LENGTH; i++) {
+            int digit = indexOf(id.charAt(i));
+            if (digit < 0) {
+                return 0;
+            }
+            value = value << 5 | digit;
+        }
+        return value;
+    }
+
+    private static int indexOf(char c) {
+        for (int i = 0; i < ALPHABET.length; i++) {
+            if (ALPHABET[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
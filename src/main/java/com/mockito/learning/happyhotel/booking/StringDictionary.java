@@ -0,0 +1,46 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Append-only dictionary coding strings as dense ints, so a column of repeated values stores each string once.
+// Codes are never reused; a value stays in the dictionary after its last booking is gone.
+final class StringDictionary {
+
+    static final int NULL = -1;
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[16];
+    private int size;
+
+    int encode(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : add(value);
+    }
+
+    // callers only hold codes handed out by encode, which happened before they stored the code
+    String decode(int code) {
+        return code == NULL ? null : values[code];
+    }
+
+    int size() {
+        return codes.size();
+    }
+
+    private synchronized int add(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        codes.put(value, size);
+        return size++;
+    }
+
+}
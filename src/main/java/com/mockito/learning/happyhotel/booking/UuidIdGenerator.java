@@ -0,0 +1,12 @@
+package com.mockito.learning.happyhotel.booking;
+
+import java.util.UUID;
+
+public class UuidIdGenerator implements IdGenerator {
+
+    @Override
+    public String nextId() {
+        return UUID.randomUUID().toString();
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.mockito.learning.happyhotel.booking;
+
+// A booking as of one write; every write to a booking gives it a higher version. Stores compare records by
+// identity when they swap them, so this class deliberately keeps Object's equals.
+public class VersionedBooking {
+
+    private final BookingRequest bookingRequest;
+    private final long version;
+
+    public VersionedBooking(BookingRequest bookingRequest, long version) {
+        this.bookingRequest = bookingRequest;
+        this.version = version;
+    }
+
+    public BookingRequest getBookingRequest() {
+        return bookingRequest;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Runs every Tomcat request, and the booking work AsyncBookingService hands off, on its own virtual thread, so
+// neither a request waiting on a booking nor a booking waiting on the journal or a payment holds a pool thread.
+// The journal and the payment ledger lock with ReentrantLocks, so that code parks rather than pins a carrier.
+// Bookings are no longer queued behind a fixed pool; a saturated confirmation outbox still turns them away with 503.
+// VirtualThreadLoadComparison measures both modes on the booking endpoint.
+@Configuration
+@ConditionalOnProperty(name = "happyhotel.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadExecutorCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    @Bean
+    public ExecutorService bookingExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the same expectations for every calendar backend, so RoomService can't tell them apart
+class AvailabilityCalendarContractTest {
+
+    private static final long FROM = 20_000;
+
+    @ParameterizedTest
+    @EnumSource(AvailabilityCalendarType.class)
+    void should_FreeRoom_When_StayReleased(AvailabilityCalendarType calendarType) {
+        AvailabilityCalendar calendar = newCalendar(calendarType, 130);
+        // given
+        assertTrue(calendar.book(65, FROM, FROM + 3));
+
+        // when
+        boolean released = calendar.release(65, FROM, FROM + 3);
+
+        // then
+        assertTrue(released);
+        assertTrue(calendar.isFree(65, FROM, FROM + 3));
+        assertEquals(65, calendar.nextFreeRoom(65, 130, FROM, FROM + 3));
+    }
+
+    @ParameterizedTest
+    @EnumSource(AvailabilityCalendarType.class)
+    void should_RejectRelease_When_StayAlreadyReleased(AvailabilityCalendarType calendarType) {
+        AvailabilityCalendar calendar = newCalendar(calendarType, 10);
+        // given
+        calendar.book(3, FROM, FROM + 2);
+        calendar.release(3, FROM, FROM + 2);
+
+        // when
+        boolean releasedAgain = calendar.release(3, FROM, FROM + 2);
+
+        // then
+        assertFalse(releasedAgain);
+        assertTrue(calendar.book(3, FROM, FROM + 2));
+    }
+
+    @ParameterizedTest
+    @EnumSource(AvailabilityCalendarType.class)
+    void should_RejectRelease_When_RangeIsNotOneStay(AvailabilityCalendarType calendarType) {
+        AvailabilityCalendar calendar = newCalendar(calendarType, 10);
+        // given
+        calendar.book(3, FROM, FROM + 4);
+        calendar.book(3, FROM + 4, FROM + 6);
+
+        // when
+        boolean head = calendar.release(3, FROM, FROM + 2);
+        boolean tail = calendar.release(3, FROM + 2, FROM + 4);
+        boolean middle = calendar.release(3, FROM + 1, FROM + 3);
+        boolean longer = calendar.release(3, FROM, FROM + 5);
+        boolean bothStays = calendar.release(3, FROM, FROM + 6);
+
+        // then
+        assertFalse(head);
+        assertFalse(tail);
+        assertFalse(middle);
+        assertFalse(longer);
+        assertFalse(bothStays);
+        for (long night = FROM; night < FROM + 6; night++) {
+            assertFalse(calendar.isFree(3, night, night + 1));
+        }
+        assertTrue(calendar.release(3, FROM, FROM + 4));
+        assertTrue(calendar.release(3, FROM + 4, FROM + 6));
+    }
+
+    @ParameterizedTest
+    @EnumSource(AvailabilityCalendarType.class)
+    void should_ReleaseWholeStay_When_RangeIsCovered(AvailabilityCalendarType calendarType) {
+        AvailabilityCalendar calendar = newCalendar(calendarType, 10);
+        // given
+        calendar.book(3, FROM, FROM + 5);
+        calendar.book(3, FROM + 5, FROM + 7);
+
+        // when
+        AvailabilityCalendar.Stay bothStays = calendar.releaseCovering(3, FROM + 4, FROM + 6);
+        AvailabilityCalendar.Stay grown = calendar.releaseCovering(3, FROM + 1, FROM + 3);
+        AvailabilityCalendar.Stay releasedAgain = calendar.releaseCovering(3, FROM + 1, FROM + 3);
+
+        // then
+        assertNull(bothStays);
+        assertEquals(new AvailabilityCalendar.Stay(FROM, FROM + 5), grown);
+        assertNull(releasedAgain);
+        assertTrue(calendar.isFree(3, FROM, FROM + 5));
+        assertFalse(calendar.isFree(3, FROM + 5, FROM + 6));
+        assertTrue(calendar.release(3, FROM + 5, FROM + 7));
+    }
+
+    @ParameterizedTest
+    @EnumSource(AvailabilityCalendarType.class)
+    void should_MoveStay_When_NewNightsFree(AvailabilityCalendarType calendarType) {
+        AvailabilityCalendar calendar = newCalendar(calendarType, 10);
+        // given
+        calendar.book(3, FROM, FROM + 2);
+        calendar.book(3, FROM + 4, FROM + 5);
+
+        // when
+        boolean extended = calendar.move(3, FROM, FROM + 2, FROM, FROM + 4);
+        boolean shifted = calendar.move(3, FROM, FROM + 4, FROM + 1, FROM + 3);
+
+        // then
+        assertTrue(extended);
+        assertTrue(shifted);
+        assertTrue(calendar.isFree(3, FROM, FROM + 1));
+        assertFalse(calendar.isFree(3, FROM + 1, FROM + 3));
+        assertTrue(calendar.isFree(3, FROM + 3, FROM + 4));
+        assertFalse(calendar.release(3, FROM, FROM + 4));
+        assertTrue(calendar.release(3, FROM + 1, FROM + 3));
+        assertTrue(calendar.release(3, FROM + 4, FROM + 5));
+    }
+
+    @ParameterizedTest
+    @EnumSource(AvailabilityCalendarType.class)
+    void should_KeepStay_When_MovedOntoBookedNights(AvailabilityCalendarType calendarType) {
+        AvailabilityCalendar calendar = newCalendar(calendarType, 10);
+        // given
+        calendar.book(3, FROM, FROM + 2);
+        calendar.book(3, FROM + 3, FROM + 4);
+
+        // when
+        boolean moved = calendar.move(3, FROM, FROM + 2, FROM + 1, FROM + 4);
+
+        // then
+        assertFalse(moved);
+        assertFalse(calendar.isFree(3, FROM, FROM + 1));
+        assertTrue(calendar.isFree(3, FROM + 2, FROM + 3));
+        assertEquals(3, calendar.nextFreeRoom(3, 10, FROM + 2, FROM + 3));
+        assertTrue(calendar.release(3, FROM, FROM + 2));
+    }
+
+    @ParameterizedTest
+    @EnumSource(AvailabilityCalendarType.class)
+    void should_ReleaseStayOnce_When_ReleasedConcurrently(AvailabilityCalendarType calendarType) throws Exception {
+        AvailabilityCalendar calendar = newCalendar(calendarType, 64);
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        try {
+            for (int round = 0; round < 200; round++) {
+                // given
+                long from = FROM + round * 4;
+                int room = round % 64;
+                calendar.book(room, from, from + 3);
+
+                // when
+                List<Future<Boolean>> releases = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    releases.add(executor.submit(() -> {
+                        start.await();
+                        return calendar.release(room, from, from + 3);
+                    }));
+                }
+                int released = 0;
+                for (Future<Boolean> release : releases) {
+                    released += release.get() ? 1 : 0;
+                }
+
+                // then
+                assertEquals(1, released);
+                assertTrue(calendar.isFree(room, from, from + 3));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static AvailabilityCalendar newCalendar(AvailabilityCalendarType calendarType, int roomCount) {
+        return calendarType == AvailabilityCalendarType.BITMAP
+                ? new BitmapAvailabilityCalendar(roomCount)
+                : new IntervalAvailabilityCalendar(roomCount);
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class BookingControllerTest {
+
+    private static final String BOOKING = """
+            {"userId": "1", "dateFrom": "2030-01-01", "dateTo": "2030-01-05", "guestCount": 5, "prepaid": false}
+            """;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void shouldBookAndCancelRoom() throws Exception {
+        // given
+        MvcResult booking = mockMvc.perform(post("/bookings").contentType(MediaType.APPLICATION_JSON).content(BOOKING))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String bookingId = mockMvc.perform(asyncDispatch(booking))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        // when
+        MvcResult cancellation = mockMvc.perform(delete("/bookings/" + bookingId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // then
+        mockMvc.perform(asyncDispatch(cancellation))
+                .andExpect(status().isNoContent());
+        MvcResult availability = mockMvc.perform(get("/availability")
+                        .param("dateFrom", "2030-01-01").param("dateTo", "2030-01-05"))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(availability))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(5)));
+    }
+
+    @Test
+    public void shouldReturnConflict_When_NoRoomLeft() throws Exception {
+        // given
+        String booking = BOOKING.replace("2030-01-0", "2031-01-0");
+        mockMvc.perform(asyncDispatch(mockMvc.perform(post("/bookings")
+                        .contentType(MediaType.APPLICATION_JSON).content(booking)).andReturn()))
+                .andExpect(status().isCreated());
+
+        // when
+        MvcResult secondBooking = mockMvc.perform(post("/bookings").contentType(MediaType.APPLICATION_JSON).content(booking))
+                .andReturn();
+
+        // then
+        mockMvc.perform(asyncDispatch(secondBooking))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void shouldReturnConflict_When_ModifiedWithStaleVersion() throws Exception {
+        // given
+        String booking = BOOKING.replace("2030-01-0", "2032-01-0");
+        String bookingId = mockMvc.perform(asyncDispatch(mockMvc.perform(post("/bookings")
+                        .contentType(MediaType.APPLICATION_JSON).content(booking)).andReturn()))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        mockMvc.perform(asyncDispatch(mockMvc.perform(get("/bookings/" + bookingId)).andReturn()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(1));
+        String moved = booking.replace("2032-01-0", "2032-02-0");
+        mockMvc.perform(asyncDispatch(mockMvc.perform(put("/bookings/" + bookingId).param("version", "1")
+                        .contentType(MediaType.APPLICATION_JSON).content(moved)).andReturn()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(2));
+
+        // when
+        MvcResult staleUpdate = mockMvc.perform(put("/bookings/" + bookingId).param("version", "1")
+                        .contentType(MediaType.APPLICATION_JSON).content(booking))
+                .andReturn();
+
+        // then
+        mockMvc.perform(asyncDispatch(staleUpdate))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.status").value("CONFLICT"))
+                .andExpect(jsonPath("$.version").value(2));
+    }
+
+    @Test
+    public void shouldQuotePrice() throws Exception {
+        // when
+        MvcResult quote = mockMvc.perform(get("/price")
+                        .param("dateFrom", "2030-01-01").param("dateTo", "2030-01-05").param("guestCount", "2"))
+                .andReturn();
+
+        // then
+        mockMvc.perform(asyncDispatch(quote))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.priceUsd").value(400.0))
+                .andExpect(jsonPath("$.priceEur").value(340.0));
+    }
+
+    @Test
+    public void shouldQuotePriceInRequestedCurrencies() throws Exception {
+        // when
+        MvcResult quote = mockMvc.perform(get("/price")
+                        .param("dateFrom", "2030-01-01").param("dateTo", "2030-01-05").param("guestCount", "2")
+                        .param("currencies", "GBP,JPY"))
+                .andReturn();
+
+        // then
+        mockMvc.perform(asyncDispatch(quote))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.prices.GBP").value(closeTo(296.0, 0.001)))
+                .andExpect(jsonPath("$.prices.JPY").value(closeTo(44000.0, 0.001)));
+    }
+
+    @Test
+    public void shouldReturnBadRequest_When_CurrencyUnknown() throws Exception {
+        // when
+        mockMvc.perform(get("/price")
+                        .param("dateFrom", "2030-01-01").param("dateTo", "2030-01-05").param("guestCount", "2")
+                        .param("currencies", "XYZ"))
+
+                // then
+                .andExpect(status().isBadRequest());
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.api.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookingDAOTest {
+
+    private static final LocalDate DAY = LocalDate.of(2020, 01, 01);
+
+    private final BookingDAO bookingDAO = new BookingDAO();
+
+    private BookingRequest booking(String userId, String roomId, int fromDay, int toDay) {
+        return new BookingRequest(userId, DAY.plusDays(fromDay), DAY.plusDays(toDay), 2, false).withRoomId(roomId);
+    }
+
+    @Test
+    void should_FindBookingsOfUser_When_Saved() {
+        // given
+        String later = bookingDAO.save(booking("1", "1.1", 10, 12));
+        String earlier = bookingDAO.save(booking("1", "1.2", 0, 3));
+        bookingDAO.save(booking("2", "1.1", 0, 3));
+
+        // when
+        Map<String, BookingRequest> found = bookingDAO.findByUser("1");
+
+        // then
+        assertEquals(List.of(earlier, later), List.copyOf(found.keySet()));
+        assertTrue(bookingDAO.findByUser("3").isEmpty());
+    }
+
+    @Test
+    void should_FindOverlappingStays_When_QueriedByRoomAndDates() {
+        // given
+        String longStay = bookingDAO.save(booking("1", "1.1", 0, 10));
+        String inside = bookingDAO.save(booking("2", "1.1", 12, 14));
+        bookingDAO.save(booking("3", "1.1", 20, 22));
+        String otherRoom = bookingDAO.save(booking("4", "1.2", 13, 15));
+        bookingDAO.saveAll(List.of(booking("5", "1.2", 0, 1)));
+
+        // when
+        Map<String, BookingRequest> inRoom = bookingDAO.findByRoom("1.1", DAY.plusDays(5), DAY.plusDays(15));
+        Map<String, BookingRequest> inRange = bookingDAO.findByDates(DAY.plusDays(5), DAY.plusDays(15));
+
+        // then
+        assertEquals(List.of(longStay, inside), List.copyOf(inRoom.keySet()));
+        assertEquals(List.of(longStay, inside, otherRoom), List.copyOf(inRange.keySet()));
+        assertTrue(bookingDAO.findByDates(DAY.plusDays(10), DAY.plusDays(12)).isEmpty());
+    }
+
+    @Test
+    void should_FollowBooking_When_UpdatedAndDeleted() {
+        // given
+        String moved = bookingDAO.save(booking("1", "1.1", 0, 3));
+        String deleted = bookingDAO.save(booking("1", "1.2", 0, 3));
+
+        // when
+        bookingDAO.update(moved, 1, booking("1", "2.1", 5, 7));
+        bookingDAO.delete(deleted);
+
+        // then
+        assertEquals(List.of(moved), List.copyOf(bookingDAO.findByUser("1").keySet()));
+        assertTrue(bookingDAO.findByRoom("1.1", DAY, DAY.plusDays(3)).isEmpty());
+        assertTrue(bookingDAO.findByDates(DAY, DAY.plusDays(3)).isEmpty());
+        assertEquals(booking("1", "2.1", 5, 7), bookingDAO.findByRoom("2.1", DAY, DAY.plusDays(30)).get(moved));
+    }
+
+    @Test
+    void should_IndexStoredBookings_When_Created() {
+        // given
+        ShardedBookingStore store = new ShardedBookingStore(2);
+        store.put("a", booking("1", "1.1", 0, 3));
+
+        // when
+        BookingDAO reopened = new BookingDAO(store, new SnowflakeIdGenerator(1));
+
+        // then
+        assertEquals(List.of("a"), List.copyOf(reopened.findByUser("1").keySet()));
+        assertEquals(List.of("a"), List.copyOf(reopened.findByRoom("1.1", DAY, DAY.plusDays(1)).keySet()));
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.mockito.learning.happyhotel.booking;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookingMetricsTest {
+
+    @InjectMocks
+    private BookingService bookingService;
+
+    @Spy
+    private PaymentService paymentService;
+
+    @Spy
+    private RoomService roomService;
+
+    @Spy
+    private BookingDAO bookingDAO;
+
+    @Spy
+    private PricingEngine pricingEngine;
+
+    @Spy
+    private CurrencyConverter currencyConverter;
+
+    @Spy
+    private QuoteCache quoteCache;
+
+    @Spy
+    private BookingSaga bookingSaga;
+
+    @Mock
+    private MailSender mailSenderMock;
+
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setup() {
+        registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.removeRegistry(registry);
+    }
+
+    @Test
+    void should_TimeEveryStage_When_BookingMade() {
+        // given
+        BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 02), 3, true);
+
+        // when
+        bookingService.makeBooking(bookingRequest);
+
+        // then
+        assertEquals(1, registry.get("happyhotel.booking").tag("mode", "single").timer().count());
+        for (String stage : new String[]{"room_search", "pricing", "payment", "hold", "persistence"}) {
+            assertEquals(1, registry.get("happyhotel.booking.stage").tag("stage", stage).timer().count(), stage);
+        }
+        // counters registered by earlier bookings show up in every registry added later, so check the counts
+        assertEquals(0, registry.find("happyhotel.booking.failures").counters().stream()
+                .mapToDouble(Counter::count).sum());
+    }
+
+    @Test
+    void should_CountFailureByStageAndCause_When_PaymentDeclined() {
+        // given
+        BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 02), 3, true);
+        bookingService.makeBooking(bookingRequest);
+        BookingRequest expensiveRequest = new BookingRequest("2", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 10), 2, true);
+        BookingRequest sameStayRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 02), 3, true);
+
+        // when
+        assertThrows(UnsupportedOperationException.class, () -> bookingService.makeBooking(expensiveRequest));
+        assertThrows(BusinessException.class, () -> bookingService.makeBooking(sameStayRequest));
+
+        // then
+        assertEquals(1, registry.get("happyhotel.booking.failures")
+                .tags("stage", "payment", "cause", "UnsupportedOperationException").counter().count());
+        assertEquals(1, registry.get("happyhotel.booking.failures")
+                .tags("stage", "room_search", "cause", "BusinessException").counter().count());
+        assertEquals(1, registry.get("happyhotel.booking").tag("mode", "single").timer().count());
+    }
+
+    @Test
+    void should_TimeConfirmation_When_SentInBatch() {
+        // given
+        MailSender mailSender = new MailSender(Mockito.mock(ConfirmationOutbox.class));
+
+        // when
+        mailSender.sendBookingConfirmations(List.of("1", "2"));
+
+        // then
+        assertEquals(1, registry.get("happyhotel.booking.stage").tag("stage", "confirmation").timer().count());
+    }
+
+}
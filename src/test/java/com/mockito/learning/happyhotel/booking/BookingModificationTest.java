@@ -0,0 +1,195 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class BookingModificationTest {
+
+    @InjectMocks
+    private BookingService bookingService;
+
+    @Spy
+    private PaymentService paymentService;
+
+    @Spy
+    private RoomService roomService;
+
+    @Spy
+    private BookingDAO bookingDAO;
+
+    @Mock
+    private MailSender mailSenderMock;
+
+    @Spy
+    private PricingEngine pricingEngine;
+
+    @Spy
+    private CurrencyConverter currencyConverter;
+
+    @Spy
+    private QuoteCache quoteCache;
+
+    @Spy
+    private BookingSaga bookingSaga;
+
+    private final BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+            LocalDate.of(2020, 01, 02), 2, true);
+
+    @Test
+    void should_MoveBookingAndFreeOldRoom_When_VersionMatches() {
+        // given
+        String bookingId = bookingService.makeBooking(bookingRequest);
+        long version = bookingService.getBooking(bookingId).getVersion();
+
+        // when
+        BookingUpdate update = bookingService.modifyBooking(bookingId, version, LocalDate.of(2020, 01, 03),
+                LocalDate.of(2020, 01, 04), 2);
+
+        // then
+        assertEquals(BookingUpdate.Status.UPDATED, update.getStatus());
+        assertEquals(version + 1, update.getVersion());
+        BookingRequest moved = bookingDAO.get(bookingId);
+        assertEquals(LocalDate.of(2020, 01, 03), moved.getDateFrom());
+        assertEquals(roomService.getRoomCount(),
+                roomService.getAvailableRooms(LocalDate.of(2020, 01, 01), LocalDate.of(2020, 01, 02)).size());
+        assertNull(paymentService.getPaymentId(bookingRequest));
+        assertNotNull(paymentService.getPaymentId(moved));
+    }
+
+    @Test
+    void should_ExtendStayInSameRoom_When_HotelFullyBooked() {
+        // given
+        String bookingId = bookingService.makeBooking(bookingRequest);
+        long version = bookingService.getBooking(bookingId).getVersion();
+        for (String roomId : new String[]{"1.2", "1.3", "2.1", "2.2"}) {
+            roomService.bookRoom(roomId, LocalDate.of(2020, 01, 01), LocalDate.of(2020, 01, 03));
+        }
+
+        // when
+        BookingUpdate update = bookingService.modifyBooking(bookingId, version, LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 03), 2);
+
+        // then
+        assertEquals(BookingUpdate.Status.UPDATED, update.getStatus());
+        BookingRequest extended = bookingDAO.get(bookingId);
+        assertEquals("1.1", extended.getRoomId());
+        assertEquals(LocalDate.of(2020, 01, 03), extended.getDateTo());
+        assertTrue(roomService.getAvailableRooms(LocalDate.of(2020, 01, 01), LocalDate.of(2020, 01, 03)).isEmpty());
+        roomService.unbookRoom("1.1", LocalDate.of(2020, 01, 01), LocalDate.of(2020, 01, 03));
+        assertNull(paymentService.getPaymentId(bookingRequest));
+        assertNotNull(paymentService.getPaymentId(extended));
+    }
+
+    @Test
+    void should_ReturnConflictAndUndo_When_VersionIsStale() {
+        // given
+        String bookingId = bookingService.makeBooking(bookingRequest);
+        long version = bookingService.getBooking(bookingId).getVersion();
+        bookingService.modifyBooking(bookingId, version, LocalDate.of(2020, 01, 03), LocalDate.of(2020, 01, 04), 2);
+
+        // when
+        BookingUpdate update = bookingService.modifyBooking(bookingId, version, LocalDate.of(2020, 01, 05),
+                LocalDate.of(2020, 01, 06), 2);
+
+        // then
+        assertEquals(BookingUpdate.Status.CONFLICT, update.getStatus());
+        assertEquals(version + 1, update.getVersion());
+        assertEquals(LocalDate.of(2020, 01, 03), bookingDAO.get(bookingId).getDateFrom());
+        assertEquals(roomService.getRoomCount(),
+                roomService.getAvailableRooms(LocalDate.of(2020, 01, 05), LocalDate.of(2020, 01, 06)).size());
+    }
+
+    @Test
+    void should_ReturnNotFound_When_BookingCancelled() {
+        // given
+        String bookingId = bookingService.makeBooking(bookingRequest);
+        long version = bookingService.getBooking(bookingId).getVersion();
+        bookingService.cancelBooking(bookingId);
+
+        // when
+        BookingUpdate update = bookingService.modifyBooking(bookingId, version, LocalDate.of(2020, 01, 03),
+                LocalDate.of(2020, 01, 04), 2);
+
+        // then
+        assertEquals(BookingUpdate.Status.NOT_FOUND, update.getStatus());
+        assertEquals(roomService.getRoomCount(),
+                roomService.getAvailableRooms(LocalDate.of(2020, 01, 03), LocalDate.of(2020, 01, 04)).size());
+    }
+
+    @Test
+    void should_UnbookAndRefundOnce_When_CancelledConcurrently() throws Exception {
+        // given
+        String bookingId = bookingService.makeBooking(bookingRequest);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Future<?>[] cancellations = new Future<?>[threads];
+
+        // when
+        for (int i = 0; i < threads; i++) {
+            cancellations[i] = executor.submit(() -> {
+                start.await();
+                bookingService.cancelBooking(bookingId);
+                return null;
+            });
+        }
+        start.countDown();
+        for (Future<?> cancellation : cancellations) {
+            cancellation.get(5, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // then
+        verify(roomService, times(1)).releaseStay(any(), any(), any());
+        verify(paymentService, times(1)).refund(any());
+        assertNull(bookingDAO.get(bookingId));
+        assertEquals(0, paymentService.getPaymentCount());
+    }
+
+    @Test
+    void should_FreeEveryNight_When_CancelledWhileExtending() throws Exception {
+        // given
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        LocalDate from = LocalDate.of(2020, 01, 01);
+
+        // when
+        for (int i = 0; i < 200; i++) {
+            String bookingId = bookingService.makeBooking(new BookingRequest("1", from, from.plusDays(1), 2, true));
+            long version = bookingService.getBooking(bookingId).getVersion();
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?> extension = executor.submit(() -> {
+                start.await();
+                return bookingService.modifyBooking(bookingId, version, from, from.plusDays(2), 2);
+            });
+            Future<?> cancellation = executor.submit(() -> {
+                start.await();
+                bookingService.cancelBooking(bookingId);
+                return null;
+            });
+            start.countDown();
+            extension.get(5, TimeUnit.SECONDS);
+            cancellation.get(5, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // then
+        assertEquals(roomService.getRoomCount(), roomService.getAvailableRooms(from, from.plusDays(2)).size());
+        assertEquals(0, paymentService.getPaymentCount());
+    }
+
+}
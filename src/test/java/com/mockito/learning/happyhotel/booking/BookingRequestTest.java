@@ -0,0 +1,47 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.api.*;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookingRequestTest {
+
+    private final BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+            LocalDate.of(2020, 01, 05), 2, false);
+
+    @Test
+    void should_LeaveOriginalUnchanged_When_RoomAssigned() {
+        // given
+        Set<BookingRequest> requests = Set.of(bookingRequest);
+
+        // when
+        BookingRequest withRoom = bookingRequest.withRoomId("1.1");
+
+        // then
+        assertNull(bookingRequest.getRoomId());
+        assertEquals("1.1", withRoom.getRoomId());
+        assertNotEquals(bookingRequest, withRoom);
+        assertTrue(requests.contains(bookingRequest));
+    }
+
+    @Test
+    void should_BeEqualWithSameHash_When_SameFields() {
+        // given
+        BookingRequest sameRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 05), 2, false);
+
+        // when
+        BookingRequest withRoom = bookingRequest.withRoomId("1.1");
+        BookingRequest sameWithRoom = sameRequest.withRoomId("1.1");
+
+        // then
+        assertEquals(bookingRequest, sameRequest);
+        assertEquals(bookingRequest.hashCode(), sameRequest.hashCode());
+        assertEquals(withRoom, sameWithRoom);
+        assertEquals(withRoom.hashCode(), sameWithRoom.hashCode());
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.junit.jupiter.api.function.Executable;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class BookingSagaTest {
+
+    @InjectMocks
+    private BookingService bookingService;
+
+    @Spy
+    private PaymentService paymentService;
+
+    @Spy
+    private RoomService roomService;
+
+    @Spy
+    private BookingDAO bookingDAO;
+
+    @Mock
+    private MailSender mailSenderMock;
+
+    @Spy
+    private PricingEngine pricingEngine;
+
+    @Spy
+    private CurrencyConverter currencyConverter;
+
+    @Spy
+    private QuoteCache quoteCache;
+
+    @Spy
+    private BookingSaga bookingSaga;
+
+    private final BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+            LocalDate.of(2020, 01, 02), 2, true);
+
+    @Test
+    void should_ReleaseRoom_When_HoldExpires() throws InterruptedException {
+        // given
+        BookingSaga saga = new BookingSaga(20);
+
+        // when
+        RoomHold hold = saga.reserve(roomService, bookingRequest);
+        RoomHold confirmedHold = saga.reserve(roomService, bookingRequest);
+        assertTrue(saga.confirm(roomService, confirmedHold));
+        Thread.sleep(200);
+
+        // then
+        assertFalse(saga.confirm(roomService, hold));
+        assertFalse(confirmedHold.isHeld());
+        assertEquals(hold.getRoomId(), roomService.findAvailableRoomId(bookingRequest));
+        assertEquals(0, roomService.getActiveHoldCount());
+        saga.close();
+    }
+
+    @Test
+    void should_KeepBooking_When_ConfirmationMailFails() {
+        // given
+        doThrow(IllegalStateException.class).when(mailSenderMock).sendBookingConfirmation(any());
+
+        // when
+        String bookingId = bookingService.makeBooking(bookingRequest);
+
+        // then
+        assertEquals("1.1", bookingDAO.get(bookingId).getRoomId());
+        assertNotNull(paymentService.getPaymentId(bookingRequest));
+    }
+
+    @Test
+    void should_BookAndChargeOnce_When_PrepaidBookingRetried() {
+        // given
+        String bookingId = bookingService.makeBooking(bookingRequest);
+
+        // when
+        String retriedBookingId = bookingService.makeBooking(bookingRequest);
+
+        // then
+        assertEquals(bookingId, retriedBookingId);
+        assertEquals(1, bookingDAO.findByUser("1").size());
+        assertEquals(1, paymentService.getPaymentCount());
+        assertNotNull(roomService.claimAvailableRoomId(new BookingRequest("2", bookingRequest.getDateFrom(),
+                bookingRequest.getDateTo(), 2, false)));
+        verify(mailSenderMock, times(1)).sendBookingConfirmation(bookingId);
+    }
+
+    @Test
+    void should_ReleaseRoomAndRefund_When_SaveFails() {
+        // given
+        doThrow(IllegalStateException.class).when(bookingDAO).save(any());
+
+        // when
+        Executable executable = () -> bookingService.makeBooking(bookingRequest);
+
+        // then
+        assertThrows(IllegalStateException.class, executable);
+        verify(roomService, timeout(1000)).releaseHold(any());
+        verify(paymentService, timeout(1000)).refund(bookingRequest);
+        assertEquals(0, roomService.getActiveHoldCount());
+        assertEquals("1.1", roomService.findAvailableRoomId(bookingRequest));
+    }
+
+    @Test
+    void should_RefundAndFail_When_HoldExpiresDuringPayment() {
+        // given
+        BookingSaga shortHolds = new BookingSaga(20);
+        PaymentService slowPayments = spy(new PaymentService());
+        doAnswer(invocation -> {
+            Thread.sleep(200);
+            return invocation.callRealMethod();
+        }).when(slowPayments).pay(any(), anyDouble());
+        BookingService service = new BookingService(slowPayments, roomService, bookingDAO, mailSenderMock,
+                pricingEngine, currencyConverter, quoteCache, shortHolds);
+
+        // when
+        Executable executable = () -> service.makeBooking(bookingRequest);
+
+        // then
+        assertThrows(BusinessException.class, executable);
+        verify(slowPayments, timeout(1000)).refund(bookingRequest);
+        verify(roomService, timeout(1000)).releaseHold(any());
+        assertEquals("1.1", roomService.findAvailableRoomId(bookingRequest));
+        shortHolds.close();
+    }
+
+}
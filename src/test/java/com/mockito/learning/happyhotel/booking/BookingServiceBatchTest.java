@@ -0,0 +1,155 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class BookingServiceBatchTest {
+
+    @InjectMocks
+    private BookingService bookingService;
+
+    @Spy
+    private PaymentService paymentService;
+
+    @Spy
+    private RoomService roomService;
+
+    @Spy
+    private BookingDAO bookingDAO;
+
+    @Spy
+    private PricingEngine pricingEngine;
+
+    @Spy
+    private CurrencyConverter currencyConverter;
+
+    @Spy
+    private QuoteCache quoteCache;
+
+    @Spy
+    private BookingSaga bookingSaga;
+
+    @Mock
+    private MailSender mailSenderMock;
+
+    @Captor
+    private ArgumentCaptor<List<String>> bookingIdsCaptor;
+
+    @Test
+    void should_ReportResultPerItem_When_BatchBooked() {
+        // given
+        LocalDate from = LocalDate.of(2020, 01, 01);
+        List<BookingRequest> bookingRequests = List.of(
+                new BookingRequest("1", from, from.plusDays(1), 2, true),
+                new BookingRequest("2", from, from.plusDays(1), 2, false),
+                new BookingRequest("3", from, from.plusDays(1), 2, false),
+                new BookingRequest("4", from, from.plusDays(5), 4, true),
+                new BookingRequest("5", from, from.plusDays(1), 7, false));
+
+        // when
+        List<BookingResult> results = bookingService.makeBookings(bookingRequests);
+
+        // then
+        assertEquals(BookingResult.Status.BOOKED, results.get(0).getStatus());
+        assertEquals(BookingResult.Status.BOOKED, results.get(1).getStatus());
+        assertEquals(BookingResult.Status.NO_ROOM_AVAILABLE, results.get(2).getStatus());
+        assertEquals(BookingResult.Status.BOOKED, results.get(3).getStatus());
+        assertEquals(BookingResult.Status.NO_ROOM_AVAILABLE, results.get(4).getStatus());
+        assertEquals("1.1", bookingDAO.get(results.get(0).getBookingId()).getRoomId());
+        assertEquals("1.2", bookingDAO.get(results.get(1).getBookingId()).getRoomId());
+        verify(paymentService, times(1)).payAll(anyList(), anyList(), any());
+        verify(mailSenderMock, times(1)).sendBookingConfirmations(bookingIdsCaptor.capture());
+        assertEquals(3, bookingIdsCaptor.getValue().size());
+    }
+
+    @Test
+    void should_BookAndChargeOnce_When_BatchRetried() {
+        // given
+        LocalDate from = LocalDate.of(2020, 01, 01);
+        BookingRequest prepaidRequest = new BookingRequest("1", from, from.plusDays(1), 2, true);
+        List<BookingResult> results = bookingService.makeBookings(List.of(prepaidRequest));
+        BookingRequest newRequest = new BookingRequest("2", from, from.plusDays(1), 2, true);
+
+        // when
+        List<BookingResult> retried = bookingService.makeBookings(List.of(prepaidRequest, newRequest, newRequest));
+
+        // then
+        assertEquals(results.get(0).getBookingId(), retried.get(0).getBookingId());
+        assertEquals(retried.get(1).getBookingId(), retried.get(2).getBookingId());
+        assertEquals("1.2", bookingDAO.get(retried.get(1).getBookingId()).getRoomId());
+        assertEquals(2, paymentService.getPaymentCount());
+        assertEquals(2, bookingDAO.findByDates(from, from.plusDays(1)).size());
+    }
+
+    @Test
+    void should_ReleaseRoom_When_PaymentDeclined() {
+        // given
+        LocalDate from = LocalDate.of(2020, 01, 01);
+        List<BookingRequest> bookingRequests = List.of(
+                new BookingRequest("1", from, from.plusDays(5), 2, true));
+
+        // when
+        List<BookingResult> results = bookingService.makeBookings(bookingRequests);
+
+        // then
+        assertEquals(BookingResult.Status.PAYMENT_DECLINED, results.get(0).getStatus());
+        verify(roomService, timeout(1000)).releaseHold(any());
+        assertNotNull(roomService.claimAvailableRoomId(new BookingRequest("2", from, from.plusDays(5), 2, true)));
+        assertNotNull(roomService.claimAvailableRoomId(new BookingRequest("3", from, from.plusDays(5), 2, true)));
+        verify(mailSenderMock, times(0)).sendBookingConfirmations(any());
+    }
+
+    @Test
+    void should_ReleaseRoomsAndRefund_When_BatchCannotBeSaved() {
+        // given
+        LocalDate from = LocalDate.of(2020, 01, 01);
+        List<BookingRequest> bookingRequests = List.of(
+                new BookingRequest("1", from, from.plusDays(1), 2, true),
+                new BookingRequest("2", from, from.plusDays(1), 2, false));
+        doThrow(new IllegalStateException("Disk full")).when(bookingDAO).saveAll(anyList());
+
+        // when
+        assertThrows(IllegalStateException.class, () -> bookingService.makeBookings(bookingRequests));
+
+        // then
+        verify(roomService, timeout(1000).times(2)).releaseHold(any());
+        verify(paymentService, timeout(1000)).refund(bookingRequests.get(0));
+        assertEquals(0, paymentService.getPaymentCount());
+        assertNotNull(roomService.claimAvailableRoomId(new BookingRequest("3", from, from.plusDays(1), 2, false)));
+        assertNotNull(roomService.claimAvailableRoomId(new BookingRequest("4", from, from.plusDays(1), 2, false)));
+        verify(mailSenderMock, times(0)).sendBookingConfirmations(any());
+    }
+
+    @Test
+    void should_KeepBookings_When_ConfirmationsCannotBeQueued() {
+        // given
+        LocalDate from = LocalDate.of(2020, 01, 01);
+        List<BookingRequest> bookingRequests = List.of(
+                new BookingRequest("1", from, from.plusDays(1), 2, false));
+        doThrow(new RejectedExecutionException("Confirmation outbox is full"))
+                .when(mailSenderMock).sendBookingConfirmations(anyList());
+
+        // when
+        List<BookingResult> results = bookingService.makeBookings(bookingRequests);
+
+        // then
+        assertEquals(BookingResult.Status.BOOKED, results.get(0).getStatus());
+        assertNotNull(bookingDAO.get(results.get(0).getBookingId()));
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.api.*;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarBookingStoreTest {
+
+    private final SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(1);
+
+    private BookingRequest booking(String userId, String roomId, boolean prepaid) {
+        return new BookingRequest(userId, LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 05), 2, prepaid).withRoomId(roomId);
+    }
+
+    @Test
+    void should_ReturnEqualBooking_When_Put() {
+        // given
+        ColumnarBookingStore store = new ColumnarBookingStore(4);
+        BookingRequest bookingRequest = booking("1", "1.1", true);
+        String snowflakeId = idGenerator.nextId();
+
+        // when
+        store.put(snowflakeId, bookingRequest);
+        store.put("not-a-snowflake", booking(null, null, false));
+
+        // then
+        assertEquals(bookingRequest, store.get(snowflakeId));
+        assertEquals(bookingRequest.getRequestKey(), store.get(snowflakeId).getRequestKey());
+        assertEquals(booking(null, null, false), store.get("not-a-snowflake"));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void should_ReuseSlotsAndForgetBooking_When_Removed() {
+        // given
+        ColumnarBookingStore store = new ColumnarBookingStore(1);
+        Map<String, BookingRequest> expected = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            String id = i % 10 == 0 ? "uuid-" + i : idGenerator.nextId();
+            BookingRequest bookingRequest = booking("user-" + i % 7, "1." + i % 3, i % 2 == 0);
+            store.put(id, bookingRequest);
+            expected.put(id, bookingRequest);
+        }
+
+        // when
+        expected.keySet().removeIf(id -> {
+            if (id.hashCode() % 3 == 0) {
+                store.remove(id);
+                return true;
+            }
+            return false;
+        });
+        store.put("uuid-new", booking("user-1", "1.1", false));
+        expected.put("uuid-new", booking("user-1", "1.1", false));
+
+        // then
+        Map<String, BookingRequest> actual = new HashMap<>();
+        store.forEach(actual::put);
+        assertEquals(expected, actual);
+        assertEquals(expected.size(), store.size());
+        assertEquals(7, store.getUserCount());
+        expected.forEach((id, bookingRequest) -> assertEquals(bookingRequest, store.get(id)));
+    }
+
+    @Test
+    void should_RejectWrite_When_VersionIsStale() {
+        // given
+        ColumnarBookingStore store = new ColumnarBookingStore(1);
+        String id = idGenerator.nextId();
+        store.put(id, booking("1", "1.1", false));
+        long version = store.getVersioned(id).getVersion();
+        assertTrue(store.replace(id, version, booking("1", "1.2", false)));
+
+        // when
+        boolean staleReplace = store.replace(id, version, booking("1", "1.3", false));
+        boolean staleRemove = store.remove(id, version);
+
+        // then
+        assertFalse(staleReplace);
+        assertFalse(staleRemove);
+        assertEquals(version + 1, store.getVersioned(id).getVersion());
+        assertEquals(booking("1", "1.2", false), store.get(id));
+        assertTrue(store.remove(id, version + 1));
+        assertNull(store.getVersioned(id));
+    }
+}
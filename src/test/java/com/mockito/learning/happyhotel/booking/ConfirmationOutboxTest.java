@@ -0,0 +1,125 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfirmationOutboxTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+
+    @Test
+    void should_DeliverConfirmation_When_TransportRecoversAfterFailures() throws Exception {
+        // given
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        ConfirmationOutbox outbox = outbox(bookingIds -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("SMTP relay down");
+            }
+            delivered.addAll(bookingIds);
+            done.countDown();
+        }, false);
+        outbox.start();
+
+        // when
+        outbox.enqueue("booking-1");
+
+        // then
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("booking-1"), delivered);
+        assertEquals(3, attempts.get());
+        outbox.close();
+    }
+
+    @Test
+    void should_RedeliverPendingConfirmations_When_Restarted() throws Exception {
+        // given
+        ConfirmationOutbox crashed = outbox(bookingIds -> {
+            throw new IllegalStateException("SMTP relay down");
+        }, true);
+        crashed.enqueue("booking-1");
+        crashed.enqueue("booking-2");
+        crashed.close();
+        CountDownLatch done = new CountDownLatch(2);
+
+        // when
+        ConfirmationOutbox restarted = outbox(bookingIds -> {
+            delivered.addAll(bookingIds);
+            bookingIds.forEach(bookingId -> done.countDown());
+        }, true);
+        restarted.start();
+
+        // then
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("booking-1", "booking-2"), delivered);
+        restarted.close();
+    }
+
+    @Test
+    void should_RejectConfirmation_When_QueueStaysFull() {
+        // given
+        ConfirmationOutbox outbox = outbox(bookingIds -> {
+        }, false, 1, 5);
+        outbox.enqueue("booking-1");
+
+        // when
+        assertThrows(RejectedExecutionException.class, () -> outbox.checkCapacity(1));
+        assertThrows(RejectedExecutionException.class, () -> outbox.enqueue("booking-2"));
+
+        // then
+        assertEquals(1, outbox.getPendingCount());
+        assertEquals(Set.of("booking-2"), outbox.getDeadLetters());
+        outbox.close();
+    }
+
+    @Test
+    void should_KeepDeadLetter_When_AttemptsExhausted() throws Exception {
+        // given
+        ConfirmationOutbox outbox = outbox(bookingIds -> {
+            throw new IllegalStateException("SMTP relay down");
+        }, true, 100, 5);
+        outbox.start();
+
+        // when
+        outbox.enqueue("booking-1");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (outbox.getDeadLetters().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        outbox.close();
+        ConfirmationOutbox restarted = outbox(bookingIds -> {
+            delivered.addAll(bookingIds);
+        }, true, 100, 5);
+        restarted.start();
+        Thread.sleep(100);
+
+        // then
+        assertEquals(Set.of("booking-1"), restarted.getDeadLetters());
+        assertEquals(List.of(), delivered);
+        restarted.close();
+    }
+
+    private ConfirmationOutbox outbox(MailTransport transport, boolean persistent) {
+        return outbox(transport, persistent, 100, 5);
+    }
+
+    private ConfirmationOutbox outbox(MailTransport transport, boolean persistent, int capacity, int maxAttempts) {
+        JournalSettings journalSettings = new JournalSettings(persistent, directory, FsyncPolicy.PER_WRITE, 100, 0);
+        return new ConfirmationOutbox(transport, journalSettings, capacity, 10, 1, 10, maxAttempts, 1, 10);
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.api.*;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CurrencyConverterTest {
+
+    private final AtomicReference<ExchangeRates> feed = new AtomicReference<>(
+            new ExchangeRates(Map.of("EUR", 0.85), Instant.EPOCH));
+
+    @Test
+    void should_ConvertWithBundledRates_When_NoFileConfigured() {
+        // given
+        CurrencyConverter currencyConverter = new CurrencyConverter();
+
+        // when
+        double euro = currencyConverter.toEuro(400.0);
+
+        // then
+        assertEquals(340.0, euro, 0.0001);
+        assertEquals(400.0, currencyConverter.convert(400.0, "USD"));
+    }
+
+    @Test
+    void should_UseNewSnapshot_When_Refreshed() {
+        // given
+        CurrencyConverter currencyConverter = new CurrencyConverter(feed::get, 0);
+        ExchangeRates before = currencyConverter.getRates();
+        feed.set(new ExchangeRates(Map.of("EUR", 0.9, "GBP", 0.8), Instant.EPOCH.plusSeconds(60)));
+
+        // when
+        currencyConverter.refresh();
+
+        // then
+        assertEquals(90.0, currencyConverter.toEuro(100.0), 0.0001);
+        assertEquals(80.0, currencyConverter.convert(100.0, "GBP"), 0.0001);
+        assertThrows(IllegalArgumentException.class, () -> before.convert(100.0, "GBP"));
+    }
+
+    @Test
+    void should_KeepSnapshot_When_RatesUnchanged() {
+        // given
+        CurrencyConverter currencyConverter = new CurrencyConverter(feed::get, 0);
+        ExchangeRates before = currencyConverter.getRates();
+        feed.set(new ExchangeRates(Map.of("EUR", 0.85), Instant.EPOCH.plusSeconds(60)));
+
+        // when
+        currencyConverter.refresh();
+
+        // then
+        assertSame(before, currencyConverter.getRates());
+    }
+
+    @Test
+    void should_KeepLastRates_When_ProviderFails() {
+        // given
+        CurrencyConverter currencyConverter = new CurrencyConverter(() -> {
+            if (feed.get() == null) {
+                throw new IllegalStateException("rate feed down");
+            }
+            return feed.get();
+        }, 0);
+        feed.set(null);
+
+        // when
+        currencyConverter.refresh();
+
+        // then
+        assertEquals(85.0, currencyConverter.toEuro(100.0), 0.0001);
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FreeRoomIndexTest {
+
+    @Test
+    void should_SkipFullWords_When_SearchingFreeRoom() {
+        // given
+        FreeRoomIndex index = new FreeRoomIndex(10_000);
+        for (int room = 0; room < 9_000; room++) {
+            index.markBooked(room, 100, 101);
+        }
+
+        // when
+        int free = index.nextFreeRoom(0, 10_000, 100, 101);
+
+        // then
+        assertEquals(9_000, free);
+        assertEquals(-1, index.nextFreeRoom(0, 9_000, 100, 101));
+    }
+
+    @Test
+    void should_FindRoomFreeOnEveryNight_When_NightsDisagree() {
+        // given
+        FreeRoomIndex index = new FreeRoomIndex(300);
+        for (int room = 0; room < 130; room++) {
+            index.markBooked(room, 100, 101);
+        }
+        for (int room = 130; room < 200; room++) {
+            index.markBooked(room, 102, 103);
+        }
+        index.markBooked(200, 101, 102);
+
+        // when
+        int free = index.nextFreeRoom(0, 300, 100, 103);
+
+        // then
+        assertEquals(201, free);
+        assertEquals(-1, index.nextFreeRoom(0, 201, 100, 103));
+    }
+
+    @Test
+    void should_ShowRoomFree_When_MarkedFreeInFullWord() {
+        // given
+        FreeRoomIndex index = new FreeRoomIndex(100);
+        for (int room = 0; room < 100; room++) {
+            index.markBooked(room, 100, 102);
+        }
+
+        // when
+        index.markFree(70, 101);
+
+        // then
+        assertEquals(-1, index.nextFreeRoom(0, 100, 100, 102));
+        assertEquals(70, index.nextFreeRoom(0, 100, 101, 102));
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedTimingWheelTest {
+
+    private static class Entry extends HashedTimingWheel.Timeout {
+
+        private final long scheduledNanos = System.nanoTime();
+        private volatile long expiredNanos;
+
+    }
+
+    @Test
+    void should_ExpireTimeouts_When_DeadlinePassed() throws InterruptedException {
+        Set<Entry> expired = ConcurrentHashMap.newKeySet();
+        HashedTimingWheel<Entry> wheel = new HashedTimingWheel<>("test-wheel", 10, 8, entry -> {
+            entry.expiredNanos = System.nanoTime();
+            expired.add(entry);
+        });
+        // given
+        Entry soon = new Entry();
+        Entry afterSeveralRounds = new Entry();
+
+        // when
+        wheel.schedule(soon, 20);
+        wheel.schedule(afterSeveralRounds, 250);
+        awaitSize(expired, 2);
+
+        // then
+        assertTrue(soon.expiredNanos - soon.scheduledNanos >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(afterSeveralRounds.expiredNanos - afterSeveralRounds.scheduledNanos
+                >= TimeUnit.MILLISECONDS.toNanos(250));
+        wheel.stop();
+    }
+
+    @Test
+    void should_NotExpire_When_Cancelled() throws InterruptedException {
+        Set<Entry> expired = ConcurrentHashMap.newKeySet();
+        HashedTimingWheel<Entry> wheel = new HashedTimingWheel<>("test-wheel", 10, 8, expired::add);
+        // given
+        Entry cancelled = new Entry();
+        Entry kept = new Entry();
+        wheel.schedule(cancelled, 50);
+        wheel.schedule(kept, 100);
+
+        // when
+        wheel.cancel(cancelled);
+        awaitSize(expired, 1);
+        Thread.sleep(100);
+
+        // then
+        assertEquals(Set.of(kept), expired);
+        wheel.stop();
+    }
+
+    private static void awaitSize(Set<Entry> expired, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (expired.size() < size && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(size, expired.size());
+    }
+
+}
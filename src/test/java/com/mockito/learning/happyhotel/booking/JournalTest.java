@@ -0,0 +1,234 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @EnumSource(FsyncPolicy.class)
+    void should_ReplayRecordsInOrder_When_Reopened(FsyncPolicy fsyncPolicy) {
+        // given
+        Path file = directory.resolve("test.journal");
+        Journal journal = new Journal(file, fsyncPolicy, 10, 64);
+        journal.replay((type, payload) -> fail("journal should start empty"));
+        for (int i = 0; i < 20; i++) {
+            journal.append((byte) 1, new byte[]{(byte) i, (byte) (i * 2)});
+        }
+        journal.close();
+
+        // when
+        List<Integer> replayed = replay(file);
+
+        // then
+        assertEquals(20, replayed.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, replayed.get(i));
+        }
+    }
+
+    @Test
+    void should_RejectRecord_When_PayloadIsEmpty() {
+        // given
+        Journal journal = new Journal(directory.resolve("test.journal"), FsyncPolicy.PER_WRITE, 10, 64);
+        journal.replay((type, payload) -> {
+        });
+
+        // when
+        Executable append = () -> journal.append((byte) 1, new byte[0]);
+
+        // then
+        assertThrows(IllegalArgumentException.class, append);
+        journal.close();
+    }
+
+    @Test
+    void should_DropTornRecordAndKeepAppending_When_TailIsCorrupt() throws Exception {
+        // given
+        Path file = directory.resolve("test.journal");
+        Journal journal = new Journal(file, FsyncPolicy.PER_WRITE, 10, 64);
+        journal.replay((type, payload) -> {
+        });
+        journal.append((byte) 1, new byte[]{0, 0});
+        journal.append((byte) 1, new byte[]{1, 1});
+        journal.close();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // flip a payload byte of the second record
+            channel.write(ByteBuffer.wrap(new byte[]{9}), 11 + 9);
+        }
+
+        // when
+        Journal reopened = new Journal(file, FsyncPolicy.PER_WRITE, 10, 64);
+        reopened.replay((type, payload) -> {
+        });
+        reopened.append((byte) 1, new byte[]{2, 2});
+        reopened.close();
+
+        // then
+        assertEquals(List.of(0, 2), replay(file));
+    }
+
+    @Test
+    void should_RestoreBookings_When_StoreReopened() {
+        // given
+        BookingRequest bookingRequest = bookingRequest();
+        JournaledBookingStore store = openStore();
+        store.put("a", bookingRequest);
+        store.put("b", bookingRequest);
+        store.remove("a");
+        store.close();
+
+        // when
+        JournaledBookingStore reopened = openStore();
+
+        // then
+        assertNull(reopened.get("a"));
+        assertEquals(bookingRequest, reopened.get("b"));
+        assertEquals(1, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    void should_RestoreFromSnapshotAndTail_When_Compacted() throws Exception {
+        // given
+        BookingRequest bookingRequest = bookingRequest();
+        JournaledBookingStore store = openStore();
+        store.put("a", bookingRequest);
+        store.put("b", bookingRequest);
+        store.snapshot();
+        store.remove("a");
+        store.put("c", bookingRequest);
+        store.snapshot();
+        store.put("d", bookingRequest);
+        store.close();
+
+        // when
+        JournaledBookingStore reopened = openStore();
+
+        // then
+        assertNull(reopened.get("a"));
+        assertEquals(bookingRequest, reopened.get("b"));
+        assertEquals(bookingRequest, reopened.get("c"));
+        assertEquals(bookingRequest, reopened.get("d"));
+        assertEquals(bookingRequest.getRequestKey(), reopened.get("b").getRequestKey());
+        assertEquals(bookingRequest.getRequestKey(), reopened.get("d").getRequestKey());
+        assertEquals(3, reopened.size());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of("bookings-2.journal", "bookings-2.snapshot"),
+                    files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList()));
+        }
+        reopened.close();
+    }
+
+    private JournaledBookingStore openStore() {
+        return new JournaledBookingStore(directory, file -> new Journal(file, FsyncPolicy.GROUP_COMMIT, 10, 4096),
+                new ShardedBookingStore(2));
+    }
+
+    private BookingRequest bookingRequest() {
+        return new BookingRequest("user", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 05), 2, true).withRoomId("1.1");
+    }
+
+    private List<Integer> replay(Path file) {
+        List<Integer> replayed = new ArrayList<>();
+        Journal journal = new Journal(file, FsyncPolicy.PER_WRITE, 10, 64);
+        journal.replay((type, payload) -> replayed.add((int) payload.get(0)));
+        journal.close();
+        return replayed;
+    }
+
+    @Test
+    void should_ReplayOnlyWinningWrites_When_StoreReopened() {
+        // given
+        BookingRequest bookingRequest = bookingRequest();
+        BookingRequest moved = bookingRequest.withRoomId("1.2");
+        JournaledBookingStore store = openStore();
+        store.put("a", bookingRequest);
+        store.put("b", bookingRequest);
+        long version = store.getVersioned("a").getVersion();
+        assertTrue(store.replace("a", version, moved));
+        assertFalse(store.replace("a", version, bookingRequest.withRoomId("1.3")));
+        assertFalse(store.remove("a", version));
+        assertTrue(store.remove("b", store.getVersioned("b").getVersion()));
+        store.close();
+
+        // when
+        JournaledBookingStore reopened = openStore();
+
+        // then
+        assertEquals(moved, reopened.get("a"));
+        assertNull(reopened.get("b"));
+        assertEquals(1, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    void should_KeepVersions_When_StoreReopened() {
+        // given
+        BookingRequest bookingRequest = bookingRequest();
+        JournaledBookingStore store = openStore();
+        store.put("a", bookingRequest);
+        store.put("b", bookingRequest);
+        assertTrue(store.replace("a", 1, bookingRequest.withRoomId("1.2")));
+        store.snapshot();
+        assertTrue(store.replace("a", 2, bookingRequest.withRoomId("1.3")));
+        store.put("b", bookingRequest.withRoomId("1.4"));
+        store.close();
+
+        // when
+        JournaledBookingStore reopened = openStore();
+
+        // then
+        assertEquals(3, reopened.getVersioned("a").getVersion());
+        assertEquals(2, reopened.getVersioned("b").getVersion());
+        assertFalse(reopened.replace("a", 1, bookingRequest));
+        assertTrue(reopened.replace("a", 3, bookingRequest));
+        reopened.close();
+    }
+
+    @Test
+    void should_KeepNewestVersion_When_RecordsWereLoggedOutOfOrder() {
+        // given
+        BookingRequest bookingRequest = bookingRequest();
+        Journal journal = new Journal(directory.resolve("bookings-0.journal"), FsyncPolicy.PER_WRITE, 10, 64);
+        journal.replay((type, payload) -> {
+        });
+        journal.append(JournaledBookingStore.SAVE, BookingRecordCodec.encode("a", bookingRequest.withRoomId("1.3"), 3));
+        journal.append(JournaledBookingStore.SAVE, BookingRecordCodec.encode("a", bookingRequest.withRoomId("1.2"), 2));
+        journal.append(JournaledBookingStore.DELETE, BookingRecordCodec.encodeDelete("b", 2));
+        journal.append(JournaledBookingStore.SAVE, BookingRecordCodec.encode("b", bookingRequest, 2));
+        journal.append(JournaledBookingStore.SAVE, BookingRecordCodec.encode("c", bookingRequest, 1));
+        journal.append(JournaledBookingStore.DELETE, BookingRecordCodec.encodeDelete("c", 1));
+        journal.close();
+
+        // when
+        JournaledBookingStore reopened = openStore();
+
+        // then
+        assertEquals(bookingRequest.withRoomId("1.3"), reopened.get("a"));
+        assertEquals(3, reopened.getVersioned("a").getVersion());
+        assertNull(reopened.get("b"));
+        assertNull(reopened.get("c"));
+        reopened.close();
+    }
+}
@@ -0,0 +1,112 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+            LocalDate.of(2020, 01, 02), 2, true);
+
+    @Test
+    void should_ChargeOnce_When_SameBookingRetriedConcurrently() throws Exception {
+        // given
+        PaymentService paymentService = new PaymentService();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        Set<String> paymentIds = ConcurrentHashMap.newKeySet();
+        List<Future<?>> retries = new ArrayList<>();
+
+        // when
+        for (int i = 0; i < 8; i++) {
+            retries.add(executor.submit(() -> {
+                start.await();
+                // each retry is a new request object with the client's request id, as read from a repeated HTTP call
+                return paymentIds.add(paymentService.pay(BookingRequest.fromJson("1", LocalDate.of(2020, 01, 01),
+                        LocalDate.of(2020, 01, 02), 2, true, "request-1"), 100.0));
+            }));
+        }
+        start.countDown();
+        for (Future<?> retry : retries) {
+            retry.get();
+        }
+        executor.shutdown();
+
+        // then
+        assertEquals(1, paymentIds.size());
+        assertEquals(1, paymentService.getPaymentCount());
+    }
+
+    @Test
+    void should_ChargeAgain_When_Refunded() {
+        // given
+        PaymentService paymentService = new PaymentService();
+        String first = paymentService.pay(bookingRequest, 100.0);
+
+        // when
+        boolean refunded = paymentService.refund(bookingRequest);
+        String second = paymentService.pay(bookingRequest, 100.0);
+
+        // then
+        assertTrue(refunded);
+        assertNotEquals(first, second);
+        assertFalse(paymentService.refund(new BookingRequest("2", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 02), 2, true)));
+    }
+
+    @Test
+    void should_DeduplicateWithinBatch_When_SameBookingTwice() {
+        // given
+        PaymentService paymentService = new PaymentService();
+        BookingRequest sameStayAgain = new BookingRequest(bookingRequest.getUserId(), bookingRequest.getDateFrom(),
+                bookingRequest.getDateTo(), bookingRequest.getGuestCount(), true);
+
+        // when
+        List<String> ids = paymentService.payAll(List.of(bookingRequest, sameStayAgain, bookingRequest),
+                List.of(100.0, 100.0, 100.0));
+
+        // then
+        assertEquals(ids.get(0), ids.get(2));
+        assertNotEquals(ids.get(0), ids.get(1));
+        assertEquals(2, paymentService.getPaymentCount());
+    }
+
+    @Test
+    void should_RestoreLedger_When_Restarted() {
+        // given
+        JournalSettings journalSettings = new JournalSettings(true, directory, FsyncPolicy.PER_WRITE, 100, 0);
+        BookingRequest refundedRequest = new BookingRequest("2", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 02), 2, true);
+        PaymentService paymentService = new PaymentService(journalSettings, new SnowflakeIdGenerator(0));
+        String paymentId = paymentService.pay(bookingRequest, 100.0);
+        paymentService.payAll(List.of(refundedRequest), List.of(100.0));
+        paymentService.refund(refundedRequest);
+        paymentService.close();
+
+        // when
+        PaymentService restarted = new PaymentService(journalSettings, new SnowflakeIdGenerator(0));
+
+        // then
+        assertEquals(1, restarted.getPaymentCount());
+        assertEquals(paymentId, restarted.pay(bookingRequest, 100.0));
+        assertNull(restarted.getPaymentId(refundedRequest));
+        restarted.close();
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.function.Executable;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PricingEngineTest {
+
+    @Test
+    void should_ChargeBasePricePerGuestAndNight_When_NoRatesConfigured() {
+        // given
+        PricingEngine pricingEngine = new PricingEngine();
+        BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 05), 2, false);
+
+        // when
+        double price = pricingEngine.price(bookingRequest);
+
+        // then
+        assertEquals(400.0, price);
+    }
+
+    @Test
+    void should_ApplySeasonalRate_When_StayOverlapsSeason() {
+        // given
+        PricingEngine pricingEngine = new PricingEngine(50.0,
+                List.of(new SeasonalRate(LocalDate.of(2030, 07, 03), LocalDate.of(2030, 07, 05), 1.5)),
+                Map.of(), Map.of());
+        BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2030, 07, 01),
+                LocalDate.of(2030, 07, 06), 2, false);
+
+        // when
+        double price = pricingEngine.price(bookingRequest);
+
+        // then
+        // 3 nights at 50 and 2 nights at 75, for 2 guests
+        assertEquals(600.0, price);
+    }
+
+    @Test
+    void should_ApplyRoomTypeAndLengthOfStayFactors_When_Configured() {
+        // given
+        PricingEngine pricingEngine = new PricingEngine(50.0, List.of(), Map.of(5, 0.9),
+                Map.of(7, 0.9, 14, 0.8));
+        LocalDate from = LocalDate.of(2030, 01, 01);
+
+        // when
+        double week = pricingEngine.price(new BookingRequest("1", from, from.plusDays(7), 2, false));
+        double fortnight = pricingEngine.price(new BookingRequest("1", from, from.plusDays(20), 2, false));
+        double family = pricingEngine.price(new BookingRequest("1", from, from.plusDays(1), 5, false));
+
+        // then
+        assertEquals(630.0, week);
+        assertEquals(1600.0, fortnight);
+        assertEquals(225.0, family);
+    }
+
+    @Test
+    void should_ThrowException_When_DatesReversed() {
+        // given
+        PricingEngine pricingEngine = new PricingEngine();
+        BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 05),
+                LocalDate.of(2020, 01, 01), 2, false);
+
+        // when
+        Executable executable = () -> pricingEngine.price(bookingRequest);
+
+        // then
+        assertThrows(BusinessException.class, executable);
+    }
+
+}
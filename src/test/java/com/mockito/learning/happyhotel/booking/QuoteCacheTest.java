@@ -0,0 +1,86 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.*;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class QuoteCacheTest {
+
+    @InjectMocks
+    private BookingService bookingService;
+
+    @Mock
+    private PaymentService paymentServiceMock;
+
+    @Mock
+    private RoomService roomServiceMock;
+
+    @Mock
+    private BookingDAO bookingDAOMock;
+
+    @Mock
+    private MailSender mailSenderMock;
+
+    @Spy
+    private PricingEngine pricingEngine;
+
+    @Spy
+    private CurrencyConverter currencyConverter;
+
+    @Spy
+    private QuoteCache quoteCache;
+
+    @Spy
+    private BookingSaga bookingSaga;
+
+    @Test
+    void should_PriceOnce_When_SameSearchRepeated() {
+        // given
+        BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 05), 2, false);
+        BookingRequest sameSearch = new BookingRequest("2", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 05), 2, false);
+
+        // when
+        PriceQuote first = bookingService.quote(bookingRequest, List.of("GBP"));
+        PriceQuote second = bookingService.quote(sameSearch, List.of("GBP"));
+
+        // then
+        assertSame(first, second);
+        verify(pricingEngine, times(1)).price(any());
+    }
+
+    @Test
+    void should_PriceAgain_When_CurrenciesOrRatesChange() {
+        // given
+        BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 05), 2, false);
+        bookingService.quote(bookingRequest, List.of("GBP"));
+
+        // when
+        bookingService.quote(bookingRequest, List.of("JPY"));
+        currencyConverter.refresh();
+        PriceQuote unchangedRates = bookingService.quote(bookingRequest, List.of("GBP"));
+        doReturn(new ExchangeRates(Map.of("EUR", 0.9, "GBP", 0.7), Instant.now())).when(currencyConverter).getRates();
+        PriceQuote newRates = bookingService.quote(bookingRequest, List.of("GBP"));
+
+        // then
+        assertEquals(400.0, unchangedRates.getPriceUsd());
+        assertEquals(280.0, newRates.getPrices().get("GBP"), 0.0001);
+        verify(pricingEngine, times(3)).price(any());
+    }
+
+}
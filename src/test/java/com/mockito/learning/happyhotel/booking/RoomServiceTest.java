@@ -0,0 +1,286 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.function.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2020, 01, 01);
+
+    private RoomService newRoomService(AvailabilityCalendarType calendarType) {
+        Clock clock = Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        return new RoomService(calendarType, clock);
+    }
+
+    @ParameterizedTest
+    @EnumSource(AvailabilityCalendarType.class)
+    void should_FindRoomWithMatchingCapacity_When_Available(AvailabilityCalendarType calendarType) {
+        RoomService roomService = newRoomService(calendarType);
+        // given
+        BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 05), 5, false);
+
+        // when
+        String roomId = roomService.findAvailableRoomId(bookingRequest);
+
+        // then
+        assertEquals("1.3", roomId);
+    }
+
+    @ParameterizedTest
+    @EnumSource(AvailabilityCalendarType.class)
+    void should_ThrowException_When_NoRoomWithCapacityLeft(AvailabilityCalendarType calendarType) {
+        RoomService roomService = newRoomService(calendarType);
+        // given
+        BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 05), 5, false);
+        roomService.bookRoom("1.3", LocalDate.of(2020, 01, 04), LocalDate.of(2020, 01, 06));
+
+        // when
+        Executable executable = () -> roomService.findAvailableRoomId(bookingRequest);
+
+        // then
+        assertThrows(BusinessException.class, executable);
+    }
+
+    @ParameterizedTest
+    @EnumSource(AvailabilityCalendarType.class)
+    void should_FindRoom_When_OnlyBookedOnOtherDates(AvailabilityCalendarType calendarType) {
+        RoomService roomService = newRoomService(calendarType);
+        // given
+        BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 03, 01),
+                LocalDate.of(2020, 03, 02), 5, false);
+        roomService.bookRoom("1.3", LocalDate.of(2020, 02, 28), LocalDate.of(2020, 03, 01));
+        roomService.bookRoom("1.3", LocalDate.of(2020, 03, 02), LocalDate.of(2020, 03, 10));
+
+        // when
+        String roomId = roomService.findAvailableRoomId(bookingRequest);
+
+        // then
+        assertEquals("1.3", roomId);
+    }
+
+    @ParameterizedTest
+    @EnumSource(AvailabilityCalendarType.class)
+    void should_ReturnRoomToAvailableRooms_When_Unbooked(AvailabilityCalendarType calendarType) {
+        RoomService roomService = newRoomService(calendarType);
+        // given
+        roomService.bookRoom("2.1", TODAY, TODAY.plusDays(3));
+        assertEquals(4, roomService.getAvailableRooms().size());
+
+        // when
+        roomService.unbookRoom("2.1", TODAY, TODAY.plusDays(3));
+
+        // then
+        assertEquals(5, roomService.getAvailableRooms().size());
+    }
+
+    @ParameterizedTest
+    @EnumSource(AvailabilityCalendarType.class)
+    void should_ThrowException_When_RoomAlreadyBooked(AvailabilityCalendarType calendarType) {
+        RoomService roomService = newRoomService(calendarType);
+        // given
+        roomService.bookRoom("1.1", LocalDate.of(2020, 01, 01), LocalDate.of(2020, 01, 05));
+
+        // when
+        Executable executable = () -> roomService.bookRoom("1.1", LocalDate.of(2020, 01, 04), LocalDate.of(2020, 01, 07));
+
+        // then
+        assertThrows(BusinessException.class, executable);
+    }
+
+    @ParameterizedTest
+    @EnumSource(AvailabilityCalendarType.class)
+    void should_NeverHandOutSameRoomTwice_When_ClaimedConcurrently(AvailabilityCalendarType calendarType) throws Exception {
+        RoomService roomService = newRoomService(calendarType);
+        // given
+        BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 05), 2, false);
+        Set<String> claimedRoomIds = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // when
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                start.await();
+                try {
+                    if (!claimedRoomIds.add(roomService.claimAvailableRoomId(bookingRequest))) {
+                        duplicates.incrementAndGet();
+                    }
+                } catch (BusinessException e) {
+                    // no room left for this thread
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        // then
+        assertEquals(0, duplicates.get());
+        assertEquals(Set.of("1.1", "1.2"), claimedRoomIds);
+    }
+
+    @ParameterizedTest
+    @EnumSource(AvailabilityCalendarType.class)
+    void should_CountOnlyPlacesFreeTonight_When_RoomsBooked(AvailabilityCalendarType calendarType) {
+        RoomService roomService = newRoomService(calendarType);
+        // given
+        roomService.bookRoom("1.3", TODAY, TODAY.plusDays(2));
+        roomService.bookRoom("2.1", TODAY.plusDays(1), TODAY.plusDays(2));
+        roomService.claimAvailableRoomId(new BookingRequest("1", TODAY.minusDays(1), TODAY.plusDays(1), 2, false));
+
+        // when
+        int availablePlaceCount = roomService.getAvailablePlaceCount();
+
+        // then
+        assertEquals(16 - 5 - 2, availablePlaceCount);
+    }
+
+    @Test
+    void should_CountNextNight_When_ClockPassesMidnight() {
+        // given
+        AtomicReference<Instant> now = new AtomicReference<>(TODAY.atTime(23, 59).toInstant(ZoneOffset.UTC));
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Instant instant() {
+                return now.get();
+            }
+        };
+        RoomService roomService = new RoomService(AvailabilityCalendarType.INTERVAL, clock);
+        roomService.bookRoom("1.3", TODAY.plusDays(1), TODAY.plusDays(2));
+        assertEquals(16, roomService.getAvailablePlaceCount());
+
+        // when
+        now.set(TODAY.plusDays(1).atStartOfDay().toInstant(ZoneOffset.UTC));
+
+        // then
+        assertEquals(16 - 5, roomService.getAvailablePlaceCount());
+    }
+
+    @Test
+    void should_ReturnRoomToSale_When_HoldExpires() throws InterruptedException {
+        RoomService roomService = newRoomService(AvailabilityCalendarType.INTERVAL);
+        // given
+        BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 05), 5, false);
+        RoomHold hold = roomService.holdRoom(bookingRequest, Duration.ofMillis(50));
+        assertEquals("1.3", hold.getRoomId());
+        assertThrows(BusinessException.class, () -> roomService.findAvailableRoomId(bookingRequest));
+
+        // when
+        awaitNoActiveHolds(roomService);
+
+        // then
+        assertFalse(hold.isHeld());
+        assertFalse(roomService.confirmHold(hold));
+        assertEquals("1.3", roomService.findAvailableRoomId(bookingRequest));
+        roomService.close();
+    }
+
+    @Test
+    void should_KeepRoom_When_HoldConfirmedInTime() throws InterruptedException {
+        RoomService roomService = newRoomService(AvailabilityCalendarType.INTERVAL);
+        // given
+        BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 05), 5, false);
+        RoomHold hold = roomService.holdRoom(bookingRequest, Duration.ofMillis(50));
+
+        // when
+        boolean confirmed = roomService.confirmHold(hold);
+        Thread.sleep(300);
+
+        // then
+        assertTrue(confirmed);
+        assertEquals(0, roomService.getActiveHoldCount());
+        assertThrows(BusinessException.class, () -> roomService.findAvailableRoomId(bookingRequest));
+        roomService.close();
+    }
+
+    @Test
+    void should_ReturnRoomAtOnce_When_HoldReleased() {
+        RoomService roomService = newRoomService(AvailabilityCalendarType.INTERVAL);
+        // given
+        BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+                LocalDate.of(2020, 01, 05), 5, false);
+        RoomHold hold = roomService.holdRoom(bookingRequest, Duration.ofMinutes(5));
+
+        // when
+        boolean released = roomService.releaseHold(hold);
+
+        // then
+        assertTrue(released);
+        assertFalse(roomService.releaseHold(hold));
+        assertFalse(roomService.confirmHold(hold));
+        assertEquals(0, roomService.getActiveHoldCount());
+        assertEquals(roomService.getRoomCount(), roomService.getAvailableRooms().size());
+        roomService.close();
+    }
+
+    @Test
+    void should_ExpireEveryHold_When_ManyRoomsHeld() throws InterruptedException {
+        // given
+        int roomCount = 5_000;
+        List<Room> inventory = new ArrayList<>();
+        for (int i = 0; i < roomCount; i++) {
+            inventory.add(new Room("r" + i, 2));
+        }
+        Clock clock = Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        RoomService roomService = new RoomService(inventory, AvailabilityCalendarType.INTERVAL, clock);
+        BookingRequest bookingRequest = new BookingRequest("1", TODAY, TODAY.plusDays(1), 2, false);
+        for (int i = 0; i < roomCount; i++) {
+            roomService.holdRoom(bookingRequest, Duration.ofMillis(1_000 + i % 500));
+        }
+        assertEquals(0, roomService.getAvailablePlaceCount());
+
+        // when
+        awaitNoActiveHolds(roomService);
+
+        // then
+        assertEquals(2 * roomCount, roomService.getAvailablePlaceCount());
+        roomService.close();
+    }
+
+    private static void awaitNoActiveHolds(RoomService roomService) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (roomService.getActiveHoldCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, roomService.getActiveHoldCount());
+    }
+
+}
@@ -14,6 +14,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class Sample01NoSpringContextTest {
@@ -33,9 +34,29 @@ class Sample01NoSpringContextTest {
     @Mock
     private MailSender mailSenderMock;
 
+    // @InjectMocks uses the biggest constructor, which takes the pricing, rates, quotes and holds collaborators too
+    @Spy
+    private PricingEngine pricingEngine;
+
+    @Spy
+    private CurrencyConverter currencyConverter;
+
+    @Spy
+    private QuoteCache quoteCache;
+
+    @Spy
+    private BookingSaga bookingSaga;
+
     @Captor
     private ArgumentCaptor<Double> doubleCaptor;
 
+    // the mocked room service hands out a room hold that confirms
+    @BeforeEach
+    void setUp() {
+        when(roomServiceMock.holdRoom(any(), any())).thenReturn(new RoomHold("1.1", 0, 0, 1));
+        when(roomServiceMock.confirmHold(any())).thenReturn(true);
+    }
+
     @Test
     void should_PayCorrectPrice_When_InputOK() {
         // given
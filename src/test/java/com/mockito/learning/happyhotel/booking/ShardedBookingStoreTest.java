@@ -0,0 +1,120 @@
+package com.mockito.learning.happyhotel.booking;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedBookingStoreTest {
+
+    private final BookingRequest bookingRequest = new BookingRequest("1", LocalDate.of(2020, 01, 01),
+            LocalDate.of(2020, 01, 05), 2, false);
+
+    @Test
+    void should_RoundShardCountUpToPowerOfTwo() {
+        // when
+        ShardedBookingStore store = new ShardedBookingStore(5);
+
+        // then
+        assertEquals(8, store.getShardStats().size());
+    }
+
+    @Test
+    void should_ReturnStoredBooking_When_Put() {
+        // given
+        ShardedBookingStore store = new ShardedBookingStore(4);
+
+        // when
+        store.put("a", bookingRequest);
+
+        // then
+        assertSame(bookingRequest, store.get("a"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void should_ForgetBooking_When_Removed() {
+        // given
+        ShardedBookingStore store = new ShardedBookingStore(4);
+        store.put("a", bookingRequest);
+
+        // when
+        store.remove("a");
+
+        // then
+        assertNull(store.get("a"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void should_ReportPerShardCounts() {
+        // given
+        ShardedBookingStore store = new ShardedBookingStore(4);
+        for (int i = 0; i < 100; i++) {
+            store.put("booking-" + i, bookingRequest);
+        }
+        store.get("booking-1");
+
+        // when
+        List<ShardStats> stats = store.getShardStats();
+
+        // then
+        assertEquals(100, stats.stream().mapToInt(ShardStats::getSize).sum());
+        assertEquals(100, stats.stream().mapToLong(ShardStats::getWrites).sum());
+        assertEquals(1, stats.stream().mapToLong(ShardStats::getReads).sum());
+        assertTrue(stats.stream().allMatch(shard -> shard.getSize() > 0));
+    }
+
+    @Test
+    void should_PublishShardStats_When_RegisteredWithMetrics() {
+        // given
+        ShardedBookingStore store = new ShardedBookingStore(4);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BookingMetrics.shards(store, registry);
+        for (int i = 0; i < 100; i++) {
+            store.put("booking-" + i, bookingRequest);
+        }
+        store.get("booking-1");
+
+        // when
+        double size = registry.find("happyhotel.bookings.shard.size").gauges().stream()
+                .mapToDouble(Gauge::value).sum();
+        double reads = registry.find("happyhotel.bookings.shard.reads").functionCounters().stream()
+                .mapToDouble(FunctionCounter::count).sum();
+        double writes = registry.find("happyhotel.bookings.shard.writes").functionCounters().stream()
+                .mapToDouble(FunctionCounter::count).sum();
+
+        // then
+        assertEquals(4, registry.find("happyhotel.bookings.shard.size").gauges().size());
+        assertEquals(100, size);
+        assertEquals(1, reads);
+        assertEquals(100, writes);
+    }
+
+    @Test
+    void should_RejectWrite_When_VersionIsStale() {
+        // given
+        ShardedBookingStore store = new ShardedBookingStore(4);
+        store.put("a", bookingRequest);
+        long version = store.getVersioned("a").getVersion();
+        BookingRequest moved = bookingRequest.withRoomId("1.2");
+        assertTrue(store.replace("a", version, moved));
+
+        // when
+        boolean staleReplace = store.replace("a", version, bookingRequest);
+        boolean staleRemove = store.remove("a", version);
+
+        // then
+        assertFalse(staleReplace);
+        assertFalse(staleRemove);
+        assertEquals(version + 1, store.getVersioned("a").getVersion());
+        assertSame(moved, store.get("a"));
+        assertTrue(store.remove("a", version + 1));
+        assertNull(store.getVersioned("a"));
+    }
+}
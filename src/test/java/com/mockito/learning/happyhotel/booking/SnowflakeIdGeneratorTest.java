@@ -0,0 +1,80 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.junit.jupiter.api.*;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnowflakeIdGeneratorTest {
+
+    @Test
+    void should_IssueIncreasingIds_When_SameMillisecond() {
+        // given
+        Clock clock = Clock.fixed(Instant.parse("2023-04-21T10:00:00Z"), ZoneOffset.UTC);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7, clock);
+        List<String> ids = new ArrayList<>();
+
+        // when
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(generator.nextId());
+        }
+
+        // then
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i - 1).compareTo(ids.get(i)) < 0);
+        }
+    }
+
+    @Test
+    void should_EncodeTimestampAndNode() {
+        // given
+        Instant now = Instant.parse("2023-04-21T10:00:00Z");
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7, Clock.fixed(now, ZoneOffset.UTC));
+
+        // when
+        long id = SnowflakeIdGenerator.parse(generator.nextId());
+
+        // then
+        assertEquals(now.toEpochMilli() - SnowflakeIdGenerator.EPOCH_MILLIS, id >>> 22);
+        assertEquals(7, (id >>> 12) & SnowflakeIdGenerator.MAX_NODE);
+        assertEquals(13, generator.nextId().length());
+    }
+
+    @Test
+    void should_IssueUniqueIds_When_CalledConcurrently() throws Exception {
+        // given
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // when
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    ids.add(generator.nextId());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // then
+        assertEquals(80_000, ids.size());
+    }
+
+    @Test
+    void should_RejectNodeOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(1024));
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.mockito.learning.happyhotel.booking;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Compares the default Tomcat pool with virtual threads on the real booking endpoint: every client books a prepaid
+// stay (payment ledger, journal with group commit) and cancels it again, so the inventory never runs out. Two
+// nights for two guests cost 200 USD, the most PaymentService accepts for a party that small.
+// Platform mode runs the bookings on a pool as wide as Tomcat's (200 threads) rather than the 8-thread default,
+// virtual mode on a virtual thread each; the queue is deep enough for every client, so neither mode rejects.
+// Run with: mvn -P virtual-threads test-compile exec:java -Dexec.classpathScope=test
+//   -Dexec.mainClass=com.mockito.learning.happyhotel.booking.VirtualThreadLoadComparison
+// Results are printed and written to target/virtual-thread-comparison.txt.
+public class VirtualThreadLoadComparison {
+
+    private static final LocalDate FIRST_ARRIVAL = LocalDate.of(2030, 1, 1);
+    private static final int ARRIVAL_DAYS = 36_500;
+    private static final Duration WARMUP = Duration.ofSeconds(5);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(20);
+    private static final int[] CONCURRENCY = {50, 200, 800, 2000};
+    private static final int PLATFORM_THREADS = 200;
+
+    public static void main(String[] args) throws Exception {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%-10s %12s %12s %12s %12s", "mode", "clients", "req/s", "p99 ms", "non-2xx"));
+        for (boolean virtualThreads : new boolean[]{false, true}) {
+            Path journal = Files.createTempDirectory("virtual-thread-comparison");
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(HappyHotelAppApplication.class)
+                    .properties("server.port=0", "happyhotel.virtual-threads.enabled=" + virtualThreads,
+                            "happyhotel.journal.enabled=true", "happyhotel.journal.dir=" + journal,
+                            "server.tomcat.threads.max=" + PLATFORM_THREADS,
+                            "happyhotel.bookings.async.threads=" + PLATFORM_THREADS,
+                            "happyhotel.bookings.async.queue-capacity=" + CONCURRENCY[CONCURRENCY.length - 1])
+                    .run()) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                URI bookings = URI.create("http://localhost:" + port + "/bookings");
+                for (int clients : CONCURRENCY) {
+                    run(bookings, clients, WARMUP);
+                    Result result = run(bookings, clients, MEASUREMENT);
+                    lines.add(String.format("%-10s %12d %12.0f %12.1f %12d", virtualThreads ? "virtual" : "platform",
+                            clients, result.requestsPerSecond, result.p99Millis, result.rejected));
+                }
+            }
+        }
+        lines.forEach(System.out::println);
+        Files.write(Path.of("target", "virtual-thread-comparison.txt"), lines);
+    }
+
+    private static Result run(URI bookings, int clients, Duration duration) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        long[][] latencies = new long[clients][];
+        LongAdder rejected = new LongAdder();
+        long deadline = System.nanoTime() + duration.toNanos();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                int clientIndex = i;
+                executor.submit(() -> {
+                    long[] samples = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        LocalDate arrival = FIRST_ARRIVAL.plusDays(ThreadLocalRandom.current().nextInt(ARRIVAL_DAYS));
+                        HttpRequest book = HttpRequest.newBuilder(bookings)
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(String.format(
+                                        "{\"userId\":\"client-%d\",\"dateFrom\":\"%s\",\"dateTo\":\"%s\","
+                                                + "\"guestCount\":2,\"prepaid\":true}",
+                                        clientIndex, arrival, arrival.plusDays(2))))
+                                .build();
+                        long start = System.nanoTime();
+                        HttpResponse<String> booked;
+                        try {
+                            booked = client.send(book, HttpResponse.BodyHandlers.ofString());
+                            if (booked.statusCode() == 201) {
+                                HttpRequest cancel = HttpRequest.newBuilder(bookings.resolve("/bookings/" + booked.body()))
+                                        .DELETE().build();
+                                client.send(cancel, HttpResponse.BodyHandlers.discarding());
+                            } else {
+                                rejected.increment();
+                            }
+                        } catch (IOException e) {
+                            continue;
+                        }
+                        if (count == samples.length) {
+                            samples = Arrays.copyOf(samples, count * 2);
+                        }
+                        samples[count++] = System.nanoTime() - start;
+                    }
+                    latencies[clientIndex] = Arrays.copyOf(samples, count);
+                    return null;
+                });
+            }
+        }
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        double p99 = all.length == 0 ? 0 : all[(int) Math.min(all.length - 1, Math.ceil(all.length * 0.99) - 1)];
+        return new Result(all.length / (double) duration.toSeconds(), p99 / TimeUnit.MILLISECONDS.toNanos(1),
+                rejected.sum());
+    }
+
+    // one request is a booking plus its cancellation
+    private record Result(double requestsPerSecond, double p99Millis, long rejected) {
+    }
+
+}